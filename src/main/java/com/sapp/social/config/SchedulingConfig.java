@@ -0,0 +1,18 @@
+package com.sapp.social.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Clock;
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+    // Injected where timing decisions are made, so tests can move time instead of sleeping
+    @Bean
+    public Clock clock() {
+        return Clock.systemUTC();
+    }
+}
@@ -1,22 +1,23 @@
 package com.sapp.social.config;
 
+import com.sapp.social.security.BoundedPasswordEncoder;
 import com.sapp.social.security.CustomUserDetailsService;
 import com.sapp.social.security.JwtAuthenticationFilter;
 import com.sapp.social.security.JwtTokenProvider;
 import com.sapp.social.security.OAuth2AuthenticationSuccessHandler;
 import com.sapp.social.service.OAuth2UserService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.client.web.AuthorizationRequestRepository;
 import org.springframework.security.oauth2.client.web.HttpSessionOAuth2AuthorizationRequestRepository;
 import org.springframework.security.oauth2.core.user.OAuth2User;
@@ -36,6 +37,18 @@ public class SecurityConfig {
     @Value("${app.frontend.url}")
     private String frontendUrl;
 
+    @Value("${app.security.password.bcrypt-strength:10}")
+    private int bcryptStrength;
+
+    @Value("${app.security.password.hash-threads:0}")
+    private int hashThreads;
+
+    @Value("${app.security.password.hash-queue-capacity:32}")
+    private int hashQueueCapacity;
+
+    @Value("${app.security.password.retry-after-seconds:2}")
+    private int hashRetryAfterSeconds;
+
     @Autowired
     private CustomUserDetailsService customUserDetailsService;
 
@@ -58,9 +71,10 @@ public class SecurityConfig {
         return authConfig.getAuthenticationManager();
     }
 
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    @Bean(destroyMethod = "shutdown")
+    public BoundedPasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        return new BoundedPasswordEncoder(bcryptStrength, hashThreads, hashQueueCapacity, hashRetryAfterSeconds,
+                meterRegistry);
     }
 
     @Bean
@@ -79,6 +93,10 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authorize -> authorize
                         .requestMatchers("/api/auth/**", "/oauth2/**", "/login/**", "/error").permitAll()
                         .requestMatchers("/ws/**").permitAll()
+                        // <img> and <video> cannot send the bearer token. Stored names are random or keyed
+                        // hashes of the content (see MediaStore), so a file is only reachable by its link
+                        .requestMatchers(HttpMethod.GET, "/api/media/**").permitAll()
+                        .requestMatchers(HttpMethod.HEAD, "/api/media/**").permitAll()
                         .anyRequest().authenticated()
                 )
                 .oauth2Login(oauth2 -> oauth2
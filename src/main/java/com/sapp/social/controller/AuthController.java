@@ -7,7 +7,12 @@ import com.sapp.social.dto.SignupRequest;
 import com.sapp.social.model.User;
 import com.sapp.social.repository.UserRepository;
 import com.sapp.social.security.JwtTokenProvider;
+import com.sapp.social.security.PasswordHashingBusyException;
+import com.sapp.social.service.UserAvailabilityIndex;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -39,14 +44,22 @@ public class AuthController {
     @Autowired
     private JwtTokenProvider tokenProvider;
 
+    @Autowired
+    private UserAvailabilityIndex userAvailabilityIndex;
+
     @PostMapping("/signin")
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        loginRequest.getEmail(),
-                        loginRequest.getPassword()
-                )
-        );
+        Authentication authentication;
+        try {
+            authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(
+                            loginRequest.getEmail(),
+                            loginRequest.getPassword()
+                    )
+            );
+        } catch (PasswordHashingBusyException e) {
+            return serviceBusy(e);
+        }
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
         String jwt = tokenProvider.generateToken(authentication);
@@ -57,14 +70,14 @@ public class AuthController {
     @PostMapping("/signup")
     public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
         // Check if username is already taken
-        if (userRepository.existsByUserName(signUpRequest.getUsername())) {
+        if (userAvailabilityIndex.userNameExists(signUpRequest.getUsername())) {
             return ResponseEntity
                     .badRequest()
                     .body("Username is already taken!");
         }
 
         // Check if email is already in use
-        if (userRepository.existsByEmail(signUpRequest.getEmail())) {
+        if (userAvailabilityIndex.emailExists(signUpRequest.getEmail())) {
             return ResponseEntity
                     .badRequest()
                     .body("Email is already in use!");
@@ -74,10 +87,31 @@ public class AuthController {
         User user = new User();
         user.setUserName(signUpRequest.getUsername());
         user.setEmail(signUpRequest.getEmail());
-        user.setPassword(passwordEncoder.encode(signUpRequest.getPassword()));
+        try {
+            user.setPassword(passwordEncoder.encode(signUpRequest.getPassword()));
+        } catch (PasswordHashingBusyException e) {
+            return serviceBusy(e);
+        }
         user.setEnabled(true);
 
-        userRepository.save(user);
+        try {
+            userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            // Taken under the database collation although the availability filter missed it;
+            // the database says which of the two collided
+            String message;
+            if (userRepository.existsByEmail(signUpRequest.getEmail())) {
+                message = "Email is already in use!";
+            } else if (userRepository.existsByUserName(signUpRequest.getUsername())) {
+                message = "Username is already taken!";
+            } else {
+                message = "Username or email is already in use!";
+            }
+            return ResponseEntity
+                    .badRequest()
+                    .body(message);
+        }
+        userAvailabilityIndex.onCreated(user);
 
         return ResponseEntity.ok("User registered successfully!");
     }
@@ -123,4 +157,10 @@ public class AuthController {
 
         return ResponseEntity.badRequest().body("User not authenticated");
     }
-}
\ No newline at end of file
+
+    private ResponseEntity<?> serviceBusy(PasswordHashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+}
@@ -0,0 +1,77 @@
+package com.sapp.social.controller;
+
+import com.sapp.social.dto.ChatMessageRequest;
+import com.sapp.social.dto.ReceiptRequest;
+import com.sapp.social.service.MessageIngestQueue;
+import com.sapp.social.service.PresenceService;
+import com.sapp.social.service.ReceiptCoalescer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+
+/**
+ * STOMP entry points for chat. The session principal is named after the user id, see
+ * StompAuthChannelInterceptor. Messages are stored through MessageIngestQueue and reach clients
+ * through ChatDeliveryService.
+ */
+@Controller
+public class ChatController {
+
+    @Autowired
+    private MessageIngestQueue messageIngestQueue;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ReceiptCoalescer receiptCoalescer;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @MessageMapping("/chat.send")
+    public void sendMessage(ChatMessageRequest request, Principal principal) {
+        if (request.getReceiverId() == null || request.getContent() == null || request.getContent().isBlank()) {
+            throw new IllegalArgumentException("Receiver and content are required");
+        }
+        messageIngestQueue.submit(Long.parseLong(principal.getName()), request.getReceiverId(), request.getContent())
+                .exceptionally(e -> {
+                    messagingTemplate.convertAndSendToUser(principal.getName(), "/queue/errors", e.getMessage());
+                    return null;
+                });
+    }
+
+    @MessageMapping("/chat.read")
+    public void markRead(ReceiptRequest request, Principal principal) {
+        requireReceipt(request);
+        receiptCoalescer.markRead(Long.parseLong(principal.getName()), request.getOtherUserId(), request.getUpToMessageId());
+    }
+
+    @MessageMapping("/chat.delivered")
+    public void markDelivered(ReceiptRequest request, Principal principal) {
+        requireReceipt(request);
+        receiptCoalescer.markDelivered(Long.parseLong(principal.getName()), request.getOtherUserId(), request.getUpToMessageId());
+    }
+
+    @MessageMapping("/presence.heartbeat")
+    public void heartbeat(Principal principal) {
+        presenceService.heartbeat(Long.parseLong(principal.getName()));
+    }
+
+    private void requireReceipt(ReceiptRequest request) {
+        if (request.getOtherUserId() == null || request.getUpToMessageId() == null) {
+            throw new IllegalArgumentException("Other user and message id are required");
+        }
+    }
+
+    @MessageExceptionHandler
+    @SendToUser(value = "/queue/errors", broadcast = false)
+    public String handleException(RuntimeException e) {
+        return e.getMessage();
+    }
+}
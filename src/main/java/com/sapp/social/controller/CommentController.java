@@ -5,20 +5,17 @@ import com.sapp.social.dto.CommentRequest;
 import com.sapp.social.dto.CommentResponse;
 import com.sapp.social.dto.UpdateCommentRequest;
 import com.sapp.social.model.Comment;
-import com.sapp.social.model.User;
-import com.sapp.social.repository.UserRepository;
+import com.sapp.social.security.AuthenticatedUser;
+import com.sapp.social.security.CurrentUser;
 import com.sapp.social.service.CommentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/comments")
@@ -27,26 +24,23 @@ public class CommentController {
     @Autowired
     private CommentService commentService;
 
-    @Autowired
-    private UserRepository userRepository;
-
     @PostMapping
-    public ResponseEntity<?> addComment(@RequestBody CommentRequest commentRequest) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-
-        Optional<User> userOpt = userRepository.findByEmail(email);
-        if (!userOpt.isPresent()) {
+    public ResponseEntity<?> addComment(@CurrentUser AuthenticatedUser user, @RequestBody CommentRequest commentRequest) {
+        if (user == null) {
             return ResponseEntity.badRequest().body("User not found");
         }
 
-        User user = userOpt.get();
-        Comment comment = commentService.addComment(
-                user.getUserId(),
-                commentRequest.getPostId(),
-                commentRequest.getContent(),
-                commentRequest.getParentCommentId()
-        );
+        Comment comment;
+        try {
+            comment = commentService.addComment(
+                    user.getUserId(),
+                    commentRequest.getPostId(),
+                    commentRequest.getContent(),
+                    commentRequest.getParentCommentId()
+            );
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
 
 
         CommentResponse response = new CommentResponse(
@@ -70,25 +64,46 @@ public class CommentController {
         return ResponseEntity.ok(comments);
     }
 
+    @GetMapping("/post/{postId}/threads")
+    public ResponseEntity<?> getCommentThreads(@PathVariable Long postId,
+                                               @RequestParam(required = false) String before,
+                                               @RequestParam(required = false) Integer limit,
+                                               @RequestParam(required = false) Integer replies) {
+        try {
+            return ResponseEntity.ok(commentService.getCommentThreads(postId, before, limit, replies));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/{commentId}/replies")
+    public ResponseEntity<?> getReplies(@PathVariable Long commentId,
+                                        @RequestParam(required = false) String after,
+                                        @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(commentService.getReplies(commentId, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @GetMapping("/{commentId}")
     public ResponseEntity<?> getComment(@PathVariable Long commentId) {
-        return commentService.getCommentById(commentId)
+        return commentService.getCommentResponse(commentId)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{commentId}")
-    public ResponseEntity<?> deleteComment(@PathVariable Long commentId) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-
-        Optional<User> userOpt = userRepository.findByEmail(email);
-        if (!userOpt.isPresent()) {
+    public ResponseEntity<?> deleteComment(@CurrentUser AuthenticatedUser user, @PathVariable Long commentId) {
+        if (user == null) {
             return ResponseEntity.badRequest().body("User not found");
         }
 
         try {
-            commentService.deleteComment(commentId, userOpt.get().getUserId());
+            commentService.deleteComment(commentId, user.getUserId());
             return ResponseEntity.ok().body("Comment deleted successfully");
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
@@ -97,25 +112,21 @@ public class CommentController {
 
     @GetMapping("/post/{postId}/count")
     public ResponseEntity<?> getCommentsCount(@PathVariable Long postId) {
-        int count = commentService.getCommentsCount(postId);
+        long count = commentService.getCommentsCount(postId);
         return ResponseEntity.ok().body(count);
     }
 
     @PutMapping("/{commentId}")
-    public ResponseEntity<?> updateComment(@PathVariable Long commentId,
+    public ResponseEntity<?> updateComment(@CurrentUser AuthenticatedUser user, @PathVariable Long commentId,
                                            @RequestBody UpdateCommentRequest updateRequest) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-
-        Optional<User> userOpt = userRepository.findByEmail(email);
-        if (!userOpt.isPresent()) {
+        if (user == null) {
             return ResponseEntity.badRequest().body("User not found");
         }
 
         try {
             Comment updatedComment = commentService.updateComment(
                     commentId,
-                    userOpt.get().getUserId(),
+                    user.getUserId(),
                     updateRequest.getContent()
             );
 
@@ -1,67 +1,54 @@
 package com.sapp.social.controller;
 
 import com.sapp.social.dto.LikeRequest;
-import com.sapp.social.model.Like;
-import com.sapp.social.model.User;
-import com.sapp.social.repository.UserRepository;
+import com.sapp.social.dto.LikeResponse;
+import com.sapp.social.security.AuthenticatedUser;
+import com.sapp.social.security.CurrentUser;
 import com.sapp.social.service.LikeService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/likes")
 public class LikeController {
 
-    @Autowired
-    private LikeService likeService;
+    private static final int MAX_STATUS_POST_IDS = 200;
 
     @Autowired
-    private UserRepository userRepository;
+    private LikeService likeService;
 
     @PostMapping("/toggle")
-    public ResponseEntity<?> toggleLike(@RequestBody LikeRequest likeRequest) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-
-        Optional<User> userOpt = userRepository.findByEmail(email);
-        if (!userOpt.isPresent()) {
+    public ResponseEntity<?> toggleLike(@CurrentUser AuthenticatedUser user, @RequestBody LikeRequest likeRequest) {
+        if (user == null) {
             return ResponseEntity.badRequest().body("User not found");
         }
 
-        User user = userOpt.get();
-        Like like = likeService.toggleLike(user.getUserId(), likeRequest.getPostId());
+        boolean liked = likeService.toggleLike(user.getUserId(), likeRequest.getPostId());
 
         Map<String, Object> response = new HashMap<>();
-        response.put("liked", like != null);
+        response.put("liked", liked);
         response.put("likesCount", likeService.getLikesCount(likeRequest.getPostId()));
 
         return ResponseEntity.ok(response);
     }
 
     @GetMapping("/post/{postId}")
-    public ResponseEntity<?> getPostLikes(@PathVariable Long postId) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-
-        Optional<User> userOpt = userRepository.findByEmail(email);
-        if (!userOpt.isPresent()) {
+    public ResponseEntity<?> getPostLikes(@CurrentUser AuthenticatedUser user, @PathVariable Long postId) {
+        if (user == null) {
             return ResponseEntity.badRequest().body("User not found");
         }
 
-        List<Like> likes = likeService.getPostLikes(postId);
-        boolean userHasLiked = likeService.hasUserLiked(userOpt.get().getUserId(), postId);
+        List<LikeResponse> likes = likeService.getPostLikes(postId);
+        boolean userHasLiked = likeService.hasUserLiked(user.getUserId(), postId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("likes", likes);
-        response.put("count", likes.size());
+        response.put("count", likeService.getLikesCount(postId));
         response.put("userHasLiked", userHasLiked);
 
         return ResponseEntity.ok(response);
@@ -69,21 +56,31 @@ public class LikeController {
 
     @GetMapping("/post/{postId}/count")
     public ResponseEntity<?> getLikesCount(@PathVariable Long postId) {
-        int count = likeService.getLikesCount(postId);
+        long count = likeService.getLikesCount(postId);
         return ResponseEntity.ok(count);
     }
 
-    @GetMapping("/post/{postId}/status")
-    public ResponseEntity<?> getUserLikeStatus(@PathVariable Long postId) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
+    @GetMapping("/status")
+    public ResponseEntity<?> getUserLikeStatuses(@CurrentUser AuthenticatedUser user, @RequestParam List<Long> postIds) {
+        if (user == null) {
+            return ResponseEntity.badRequest().body("User not found");
+        }
+
+        if (postIds.size() > MAX_STATUS_POST_IDS) {
+            return ResponseEntity.badRequest().body("At most " + MAX_STATUS_POST_IDS + " post ids per request");
+        }
 
-        Optional<User> userOpt = userRepository.findByEmail(email);
-        if (!userOpt.isPresent()) {
+        Map<Long, Boolean> statuses = likeService.getLikeStatuses(user.getUserId(), postIds);
+        return ResponseEntity.ok(statuses);
+    }
+
+    @GetMapping("/post/{postId}/status")
+    public ResponseEntity<?> getUserLikeStatus(@CurrentUser AuthenticatedUser user, @PathVariable Long postId) {
+        if (user == null) {
             return ResponseEntity.badRequest().body("User not found");
         }
 
-        boolean hasLiked = likeService.hasUserLiked(userOpt.get().getUserId(), postId);
+        boolean hasLiked = likeService.hasUserLiked(user.getUserId(), postId);
         return ResponseEntity.ok(hasLiked);
-    }
+    }
 }
\ No newline at end of file
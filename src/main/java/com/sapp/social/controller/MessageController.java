@@ -0,0 +1,116 @@
+package com.sapp.social.controller;
+
+import com.sapp.social.dto.ChatMessageRequest;
+import com.sapp.social.security.AuthenticatedUser;
+import com.sapp.social.security.CurrentUser;
+import com.sapp.social.service.MessageIngestQueue;
+import com.sapp.social.service.MessageService;
+import com.sapp.social.service.ReceiptCoalescer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/api/messages")
+public class MessageController {
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private ReceiptCoalescer receiptCoalescer;
+
+    @Autowired
+    private MessageIngestQueue messageIngestQueue;
+
+    @PostMapping
+    public CompletableFuture<ResponseEntity<?>> sendMessage(@CurrentUser AuthenticatedUser user, @RequestBody ChatMessageRequest request) {
+        if (user == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("User not found"));
+        }
+        if (request.getReceiverId() == null || request.getContent() == null || request.getContent().isBlank()) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Receiver and content are required"));
+        }
+
+        return messageIngestQueue.submit(user.getUserId(), request.getReceiverId(), request.getContent())
+                .<ResponseEntity<?>>thenApply(message -> ResponseEntity.status(HttpStatus.CREATED).body(message))
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof RejectedExecutionException) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(cause.getMessage());
+                    }
+                    return ResponseEntity.badRequest().body(cause.getMessage());
+                });
+    }
+
+    @GetMapping("/conversation/{otherUserId}")
+    public ResponseEntity<?> getConversation(@CurrentUser AuthenticatedUser user, @PathVariable Long otherUserId,
+                                             @RequestParam(required = false) String before,
+                                             @RequestParam(required = false) Integer limit) {
+        if (user == null) {
+            return ResponseEntity.badRequest().body("User not found");
+        }
+
+        try {
+            return ResponseEntity.ok(messageService.getConversation(user.getUserId(), otherUserId, before, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> searchMessages(@CurrentUser AuthenticatedUser user, @RequestParam String q,
+                                            @RequestParam(required = false) String before,
+                                            @RequestParam(required = false) Integer limit) {
+        if (user == null) {
+            return ResponseEntity.badRequest().body("User not found");
+        }
+
+        try {
+            return ResponseEntity.ok(messageService.searchMessages(user.getUserId(), q, before, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/inbox")
+    public ResponseEntity<?> getInbox(@CurrentUser AuthenticatedUser user, @RequestParam(required = false) String before,
+                                      @RequestParam(required = false) Integer limit) {
+        if (user == null) {
+            return ResponseEntity.badRequest().body("User not found");
+        }
+
+        try {
+            return ResponseEntity.ok(messageService.getInbox(user.getUserId(), before, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/conversation/{otherUserId}/read")
+    public ResponseEntity<?> markRead(@CurrentUser AuthenticatedUser user, @PathVariable Long otherUserId, @RequestParam Long upTo) {
+        if (user == null) {
+            return ResponseEntity.badRequest().body("User not found");
+        }
+
+        receiptCoalescer.markRead(user.getUserId(), otherUserId, upTo);
+        return ResponseEntity.accepted().build();
+    }
+
+    @PostMapping("/conversation/{otherUserId}/delivered")
+    public ResponseEntity<?> markDelivered(@CurrentUser AuthenticatedUser user, @PathVariable Long otherUserId, @RequestParam Long upTo) {
+        if (user == null) {
+            return ResponseEntity.badRequest().body("User not found");
+        }
+
+        receiptCoalescer.markDelivered(user.getUserId(), otherUserId, upTo);
+        return ResponseEntity.accepted().build();
+    }
+}
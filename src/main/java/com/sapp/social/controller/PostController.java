@@ -1,19 +1,18 @@
 package com.sapp.social.controller;
 
 
+import com.sapp.social.dto.FeedItem;
+import com.sapp.social.dto.FeedPage;
 import com.sapp.social.dto.UpdatePostRequest;
 import com.sapp.social.model.Post;
-import com.sapp.social.model.User;
-import com.sapp.social.repository.UserRepository;
+import com.sapp.social.security.AuthenticatedUser;
+import com.sapp.social.security.CurrentUser;
 import com.sapp.social.service.FileStorageService;
 import com.sapp.social.service.PostService;
 import com.sapp.social.util.VideoUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -29,9 +28,6 @@ public class PostController {
     @Autowired
     private PostService postService;
 
-    @Autowired
-    private UserRepository userRepository;
-
     @Autowired
     private VideoUtils videoUtil;
 
@@ -40,7 +36,7 @@ public class PostController {
 
     @PostMapping
     public ResponseEntity<?> createPost(
-            @AuthenticationPrincipal Object principal,
+            @CurrentUser AuthenticatedUser user,
             @RequestPart("description") String description,
             @RequestPart(value = "media", required = false) List<MultipartFile> mediaFiles) {
 
@@ -49,28 +45,12 @@ public class PostController {
             logger.info("Creating post with description: " + description);
             logger.info("Media files: " + (mediaFiles != null ? mediaFiles.size() : "null"));
 
-            // Get email from principal
-            String email;
-            if (principal instanceof OAuth2User oauth2User) {
-                email = (String) oauth2User.getAttributes().get("email");
-                logger.info("Authenticated via OAuth2: " + email);
-            } else if (principal instanceof UserDetails userDetails) {
-                email = userDetails.getUsername();
-                logger.info("Authenticated via UserDetails: " + email);
-            } else {
-                logger.warning("Unauthorized: Invalid principal type: " +
-                        (principal != null ? principal.getClass().getName() : "null"));
+            if (user == null) {
+                logger.warning("Unauthorized: no authenticated user");
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body("Unauthorized: Invalid authentication");
             }
 
-            // Lookup user in DB with proper error handling
-            User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> {
-                        logger.warning("User not found for email: " + email);
-                        return new RuntimeException("User not found for email: " + email);
-                    });
-
             logger.info("Found user: " + user.getUserId() + " - " + user.getUserName());
 
             // Validate media file count
@@ -96,7 +76,7 @@ public class PostController {
             Post post = postService.createPost(user.getUserId(), description, mediaFiles);
             logger.info("Post created successfully with ID: " + post.getPostId());
 
-            return ResponseEntity.status(HttpStatus.CREATED).body(post);
+            return ResponseEntity.status(HttpStatus.CREATED).body(postService.toFeedItem(post, user.getUserId()));
 
         } catch (IOException e) {
             logger.severe("IOException during post creation: " + e.getMessage());
@@ -112,23 +92,28 @@ public class PostController {
     }
 
     @GetMapping
-    public ResponseEntity<List<Post>> getAllPosts() {
+    public ResponseEntity<?> getFeed(@CurrentUser AuthenticatedUser user,
+                                     @RequestParam(required = false) String before,
+                                     @RequestParam(required = false) Integer limit) {
         try {
-            List<Post> posts = postService.getAllPosts();
-            logger.info("Retrieved " + posts.size() + " posts");
-            return ResponseEntity.ok(posts);
+            FeedPage<FeedItem> page = postService.getFeed(before, limit, findViewerId(user));
+            logger.info("Retrieved " + page.getItems().size() + " posts");
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
-            logger.severe("Error retrieving all posts: " + e.getMessage());
+            logger.severe("Error retrieving feed: " + e.getMessage());
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
     @GetMapping("/{postId}")
-    public ResponseEntity<?> getPostById(@PathVariable Long postId) {
+    public ResponseEntity<?> getPostById(@CurrentUser AuthenticatedUser user,
+                                         @PathVariable Long postId) {
         try {
             logger.info("Fetching post with ID: " + postId);
-            return postService.getPostById(postId)
+            return postService.getFeedItem(postId, findViewerId(user))
                     .map(post -> {
                         logger.info("Found post: " + post.getPostId());
                         return ResponseEntity.ok(post);
@@ -146,12 +131,17 @@ public class PostController {
     }
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<?> getPostsByUserId(@PathVariable Long userId) {
+    public ResponseEntity<?> getPostsByUserId(@CurrentUser AuthenticatedUser user,
+                                              @PathVariable Long userId,
+                                              @RequestParam(required = false) String before,
+                                              @RequestParam(required = false) Integer limit) {
         try {
             logger.info("Fetching posts for user ID: " + userId);
-            List<Post> posts = postService.getPostsByUserId(userId);
-            logger.info("Found " + posts.size() + " posts for user " + userId);
-            return ResponseEntity.ok(posts);
+            FeedPage<FeedItem> page = postService.getPostsByUserId(userId, before, limit, findViewerId(user));
+            logger.info("Found " + page.getItems().size() + " posts for user " + userId);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.severe("Error retrieving posts for user " + userId + ": " + e.getMessage());
             e.printStackTrace();
@@ -186,22 +176,14 @@ public class PostController {
     }
 
     @DeleteMapping("/{postId}")
-    public ResponseEntity<?> deletePost(@AuthenticationPrincipal Object principal,
+    public ResponseEntity<?> deletePost(@CurrentUser AuthenticatedUser user,
                                         @PathVariable Long postId) {
         try {
-            String email;
-            if (principal instanceof OAuth2User oauth2User) {
-                email = (String) oauth2User.getAttributes().get("email");
-            } else if (principal instanceof UserDetails userDetails) {
-                email = userDetails.getUsername();
-            } else {
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body("Unauthorized: Invalid authentication");
             }
 
-            User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found for email: " + email));
-
             boolean deleted = postService.deletePost(postId, user.getUserId());
 
             if (deleted) {
@@ -222,27 +204,19 @@ public class PostController {
 
     @PutMapping("/{postId}")
     public ResponseEntity<?> updatePostDescription(
-            @AuthenticationPrincipal Object principal,
+            @CurrentUser AuthenticatedUser user,
             @PathVariable Long postId,
             @RequestBody UpdatePostRequest updateRequest) {
 
         try {
-            String email;
-            if (principal instanceof OAuth2User oauth2User) {
-                email = (String) oauth2User.getAttributes().get("email");
-            } else if (principal instanceof UserDetails userDetails) {
-                email = userDetails.getUsername();
-            } else {
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body("Unauthorized: Invalid authentication");
             }
 
-            User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found for email: " + email));
-
             Post updatedPost = postService.updatePostDescription(postId, user.getUserId(), updateRequest.getDescription());
 
-            return ResponseEntity.ok(updatedPost);
+            return ResponseEntity.ok(postService.toFeedItem(updatedPost, user.getUserId()));
 
         } catch (SecurityException se) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
@@ -257,4 +231,9 @@ public class PostController {
         }
     }
 
-}
\ No newline at end of file
+    // Viewer for the liked flag; anonymous requests just see it as false
+    private Long findViewerId(AuthenticatedUser user) {
+        return user != null ? user.getUserId() : null;
+    }
+
+}
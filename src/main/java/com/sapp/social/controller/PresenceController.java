@@ -0,0 +1,38 @@
+package com.sapp.social.controller;
+
+import com.sapp.social.security.AuthenticatedUser;
+import com.sapp.social.security.CurrentUser;
+import com.sapp.social.service.PresenceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/presence")
+public class PresenceController {
+
+    private static final int MAX_STATUS_USER_IDS = 200;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @PostMapping("/heartbeat")
+    public ResponseEntity<?> heartbeat(@CurrentUser AuthenticatedUser user) {
+        if (user == null) {
+            return ResponseEntity.badRequest().body("User not found");
+        }
+
+        presenceService.heartbeat(user.getUserId());
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getOnlineStatuses(@RequestParam List<Long> userIds) {
+        if (userIds.size() > MAX_STATUS_USER_IDS) {
+            return ResponseEntity.badRequest().body("At most " + MAX_STATUS_USER_IDS + " user ids per request");
+        }
+        return ResponseEntity.ok(presenceService.getOnlineStatuses(userIds));
+    }
+}
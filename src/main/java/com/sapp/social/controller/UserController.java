@@ -2,10 +2,14 @@ package com.sapp.social.controller;
 
 
 import com.sapp.social.model.User;
+import com.sapp.social.security.PasswordHashingBusyException;
 import com.sapp.social.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -19,6 +23,9 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
     /**
      * Simple health check endpoint
      */
@@ -72,10 +79,19 @@ public class UserController {
     @PostMapping
     public ResponseEntity<?> createUser(@RequestBody User user) {
         try {
+            // Hash before the service opens its transaction, so a queued hash holds no connection
+            user.setPassword(passwordEncoder.encode(user.getPassword()));
             User createdUser = userService.createUser(user);
             return ResponseEntity.status(HttpStatus.CREATED).body(createdUser);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (DataIntegrityViolationException e) {
+            String message = userService.describeConflict(null, user.getUserName(), user.getEmail());
+            return ResponseEntity.badRequest().body(Map.of("error", message));
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(Map.of("error", e.getMessage()));
         }
     }
 
@@ -85,10 +101,20 @@ public class UserController {
     @PutMapping("/{userId}")
     public ResponseEntity<?> updateUser(@PathVariable Long userId, @RequestBody User userDetails) {
         try {
+            if (userDetails.getPassword() != null && !userDetails.getPassword().isEmpty()) {
+                userDetails.setPassword(passwordEncoder.encode(userDetails.getPassword()));
+            }
             User updatedUser = userService.updateUser(userId, userDetails);
             return ResponseEntity.ok(updatedUser);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (DataIntegrityViolationException e) {
+            String message = userService.describeConflict(userId, userDetails.getUserName(), userDetails.getEmail());
+            return ResponseEntity.badRequest().body(Map.of("error", message));
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(Map.of("error", e.getMessage()));
         }
     }
 
@@ -0,0 +1,14 @@
+package com.sapp.social.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentThread {
+    private CommentResponse comment; // carries the first replies of the thread, nested
+    private String repliesCursor; // pass to /api/comments/{commentId}/replies for the rest
+    private boolean hasMoreReplies;
+}
@@ -0,0 +1,19 @@
+package com.sapp.social.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSummaryResponse {
+    private Long otherUserId;
+    private String otherUserName;
+    private Long lastMessageId;
+    private String lastMessagePreview;
+    private LocalDateTime lastMessageAt;
+    private Long lastSenderId;
+    private int unreadCount;
+}
@@ -0,0 +1,29 @@
+package com.sapp.social.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Read model for a post in a feed. Carries counts instead of the like and comment rows
+ * so its size does not grow with engagement.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedItem {
+    private Long postId;
+    private String postType;
+    private String description;
+    private String images;
+    private LocalDateTime createdAt;
+    private Long userId;
+    private String userName;
+    private List<MediaItem> media;
+    private long likeCount;
+    private long commentCount;
+    private boolean likedByMe;
+}
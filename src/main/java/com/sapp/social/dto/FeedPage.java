@@ -0,0 +1,16 @@
+package com.sapp.social.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedPage<T> {
+    private List<T> items;
+    private String nextCursor; // null when there are no more items
+    private boolean hasMore;
+}
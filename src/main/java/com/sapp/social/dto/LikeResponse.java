@@ -0,0 +1,18 @@
+package com.sapp.social.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LikeResponse {
+    private Long likeId;
+    private Long userId;
+    private String userName;
+    private Long postId;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,18 @@
+package com.sapp.social.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaItem {
+    private Long id;
+    private String path;
+    private String contentType;
+    private String fileType;
+    private String fileName;
+    private Long fileSize;
+    private Integer duration;
+}
@@ -0,0 +1,13 @@
+package com.sapp.social.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptRequest {
+    private Long otherUserId;
+    private Long upToMessageId;
+}
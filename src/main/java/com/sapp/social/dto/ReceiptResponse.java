@@ -0,0 +1,15 @@
+package com.sapp.social.dto;
+
+import com.sapp.social.model.Message;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptResponse {
+    private Long userId;
+    private Long upToMessageId;
+    private Message.MessageStatus status;
+}
@@ -0,0 +1,18 @@
+package com.sapp.social.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Where an upload ended up: the generated file name under the upload directory, its size and
+ * the hex SHA-256 of its bytes
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredFile {
+    private String fileName;
+    private long size;
+    private String sha256;
+}
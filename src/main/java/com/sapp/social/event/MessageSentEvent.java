@@ -0,0 +1,15 @@
+package com.sapp.social.event;
+
+import com.sapp.social.dto.MessageResponse;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published inside the transaction that saves a chat message; delivery listens after commit
+ * so clients are never pushed a message that rolled back.
+ */
+@Data
+@AllArgsConstructor
+public class MessageSentEvent {
+    private MessageResponse message;
+}
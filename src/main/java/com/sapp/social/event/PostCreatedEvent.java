@@ -0,0 +1,15 @@
+package com.sapp.social.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published inside the transaction that creates a post; listeners that need the
+ * row to be visible should use {@code @TransactionalEventListener}.
+ */
+@Data
+@AllArgsConstructor
+public class PostCreatedEvent {
+    private Long postId;
+    private Long userId;
+}
@@ -0,0 +1,18 @@
+package com.sapp.social.event;
+
+import com.sapp.social.model.Message;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published when a user's messages in a conversation move to DELIVERED or READ up to a
+ * watermark; the other participant is told after commit.
+ */
+@Data
+@AllArgsConstructor
+public class ReceiptEvent {
+    private Long userId; // the user who received or read the messages
+    private Long otherUserId;
+    private Long upToMessageId;
+    private Message.MessageStatus status;
+}
@@ -1,6 +1,7 @@
 package com.sapp.social.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.sapp.social.util.CommentPaths;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -11,7 +12,10 @@ import java.util.Objects;
 import java.util.Set;
 
 @Entity
-@Table(name = "comments")
+@Table(name = "comments", indexes = {
+        @Index(name = "idx_comments_post_parent_id", columnList = "post_id, parentCommentId, commentId"),
+        @Index(name = "idx_comments_path", columnList = "path")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -26,21 +30,25 @@ public class Comment {
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "userId", nullable = false)
     private User user;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "post_id")
     @JsonBackReference
     private Post post;
 
 
     // Self-referencing relationship for comment replies
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "parentCommentId")
     private Comment parentComment;
 
+    // Ancestor ids from the thread root down to this comment, see CommentPaths
+    @Column(length = CommentPaths.MAX_LENGTH)
+    private String path;
+
     @OneToMany(mappedBy = "parentComment", cascade = CascadeType.ALL)
     private Set<Comment> replies = new HashSet<>();
 
@@ -1,6 +1,7 @@
 package com.sapp.social.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -9,7 +10,9 @@ import lombok.NoArgsConstructor;
 import java.util.Objects;
 
 @Entity
-@Table(name = "contents")
+@Table(name = "contents", indexes = {
+        @Index(name = "idx_contents_path", columnList = "path")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -28,7 +31,11 @@ public class Content {
     private String fileType;       // "image" or "video"
     private Integer duration;      // For videos, duration in seconds (null for images)
 
-    @ManyToOne
+    @Column(length = 64)
+    @JsonIgnore
+    private String sha256;         // Hex digest of the stored bytes (null for uploads before dedup)
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "post_id")
     @JsonBackReference
     private Post post;
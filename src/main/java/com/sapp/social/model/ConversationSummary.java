@@ -0,0 +1,66 @@
+package com.sapp.social.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * One row per pair of users who have exchanged messages, keyed like Message by the two ids in
+ * ascending order. Kept in step with the messages table by MessageService.
+ */
+@Entity
+@Table(name = "conversation_summaries",
+        uniqueConstraints = @UniqueConstraint(name = "uk_conversation_summaries_pair", columnNames = {"lowUserId", "highUserId"}),
+        indexes = {
+                @Index(name = "idx_conversation_summaries_low_recent", columnList = "lowUserId, lastMessageId"),
+                @Index(name = "idx_conversation_summaries_high_recent", columnList = "highUserId, lastMessageId")
+        })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSummary {
+    public static final int PREVIEW_LENGTH = 100;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long summaryId;
+
+    @Column(nullable = false)
+    private Long lowUserId;
+
+    @Column(nullable = false)
+    private Long highUserId;
+
+    @Column(nullable = false)
+    private Long lastMessageId;
+
+    @Column(length = PREVIEW_LENGTH)
+    private String lastMessagePreview;
+
+    @Column(nullable = false)
+    private LocalDateTime lastMessageAt;
+
+    @Column(nullable = false)
+    private Long lastSenderId;
+
+    // Messages not yet read by the low and the high participant respectively
+    @Column(nullable = false)
+    private int unreadLow;
+
+    @Column(nullable = false)
+    private int unreadHigh;
+
+    public Long otherUserId(Long userId) {
+        return userId.equals(lowUserId) ? highUserId : lowUserId;
+    }
+
+    public int unreadFor(Long userId) {
+        return userId.equals(lowUserId) ? unreadLow : unreadHigh;
+    }
+
+    public static String preview(String content) {
+        return content.length() <= PREVIEW_LENGTH ? content : content.substring(0, PREVIEW_LENGTH);
+    }
+}
@@ -0,0 +1,24 @@
+package com.sapp.social.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Marks a one-off data migration as done, so it is not repeated on every startup
+ */
+@Entity
+@Table(name = "data_migrations")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DataMigration {
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    @Column(nullable = false)
+    private LocalDateTime appliedAt;
+}
@@ -7,7 +7,9 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        @Index(name = "idx_messages_conversation", columnList = "lowUserId, highUserId, messageId")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -16,14 +18,19 @@ public class Message {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long messageId;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "senderId", nullable = false)
     private User sender;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "receiverId", nullable = false)
     private User receiver;
 
+    // Conversation key: the two participant ids in ascending order, whoever sent the message
+    private Long lowUserId;
+
+    private Long highUserId;
+
     @Column(nullable = false, columnDefinition = "TEXT")
     private String content;
 
@@ -40,6 +47,10 @@ public class Message {
         if (status == null) {
             status = MessageStatus.SENT;
         }
+        Long senderId = sender.getUserId();
+        Long receiverId = receiver.getUserId();
+        lowUserId = Math.min(senderId, receiverId);
+        highUserId = Math.max(senderId, receiverId);
     }
 
     public enum MessageStatus {
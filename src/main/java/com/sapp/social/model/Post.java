@@ -6,6 +6,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Objects;
@@ -31,6 +32,15 @@ public class Post {
 
     private String images;
 
+    // Denormalized counters, updated in place by LikeService/CommentService and repaired by CounterReconciler
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long likeCount;
+
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long commentCount;
+
     @OneToMany(mappedBy = "post", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
     private Set<Content> contents = new HashSet<>();
@@ -43,7 +53,7 @@ public class Post {
     @JsonManagedReference
     private Set<Like> likes = new HashSet<>();
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "userId", nullable = false)
     @JsonBackReference
     private User user;
@@ -2,15 +2,51 @@ package com.sapp.social.repository;
 
 
 import com.sapp.social.model.Comment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
     List<Comment> findByPostPostIdOrderByCreatedAtDesc(Long postId);
-    List<Comment> findByParentCommentCommentIdOrderByCreatedAtAsc(Long parentCommentId);
+
+    // Comment reads fetch the author in the same statement instead of one SELECT per comment
+
+    @EntityGraph(attributePaths = "user")
+    List<Comment> findByPostPostIdOrderByCreatedAtAscCommentIdAsc(Long postId);
+
+    @EntityGraph(attributePaths = "user")
     List<Comment> findByPostPostIdAndParentCommentIsNullOrderByCreatedAtDesc(Long postId);
+
+    @EntityGraph(attributePaths = "user")
+    Optional<Comment> findWithUserByCommentId(Long commentId);
+
     int countByPostPostId(Long postId);
+
+    // Threaded paging over the materialized path, see CommentPaths
+
+    @EntityGraph(attributePaths = "user")
+    List<Comment> findByPostPostIdAndParentCommentIsNullOrderByCommentIdDesc(Long postId, Pageable pageable);
+
+    @EntityGraph(attributePaths = "user")
+    List<Comment> findByPostPostIdAndParentCommentIsNullAndCommentIdLessThanOrderByCommentIdDesc(
+            Long postId, Long before, Pageable pageable);
+
+    @EntityGraph(attributePaths = "user")
+    @Query("SELECT c FROM Comment c WHERE c.path > :after AND c.path < :upper ORDER BY c.path ASC")
+    List<Comment> findPathRange(@Param("after") String after, @Param("upper") String upper, Pageable pageable);
+
+    @Query("SELECT COUNT(c) FROM Comment c WHERE c.path >= :path AND c.path < :upper")
+    long countPathRange(@Param("path") String path, @Param("upper") String upper);
+
+    @Query("SELECT c.path FROM Comment c WHERE c.commentId = :commentId")
+    Optional<String> findPathByCommentId(@Param("commentId") Long commentId);
+
+    List<Comment> findByPathIsNullOrderByCommentIdAsc(Pageable pageable);
 }
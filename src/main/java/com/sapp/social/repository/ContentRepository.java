@@ -0,0 +1,23 @@
+package com.sapp.social.repository;
+
+import com.sapp.social.model.Content;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ContentRepository extends JpaRepository<Content, Long> {
+
+    @Query("SELECT c FROM Content c WHERE c.post.postId IN :postIds ORDER BY c.id ASC")
+    List<Content> findByPostIds(@Param("postIds") Collection<Long> postIds);
+
+    // Each row sharing a path is one reference to that stored file
+    long countByPath(String path);
+
+    @Query("SELECT c.path FROM Content c WHERE c.post.user.userId = :userId")
+    List<String> findPathsByUserId(@Param("userId") Long userId);
+}
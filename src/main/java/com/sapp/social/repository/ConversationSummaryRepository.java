@@ -0,0 +1,113 @@
+package com.sapp.social.repository;
+
+import com.sapp.social.model.ConversationSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, Long> {
+
+    // Inbox pages, most recent conversation first. A user appears on either side of the pair, so
+    // each side is read with its own ordered, limited range scan on (low|high_user_id,
+    // last_message_id) and the two are merged; an OR over both columns would need an index merge
+    // and a filesort of the whole inbox.
+
+    String INBOX_SQL = "SELECT * FROM (" +
+            "(SELECT * FROM conversation_summaries WHERE low_user_id = :userId " +
+            "AND last_message_id < :before ORDER BY last_message_id DESC LIMIT :limit) " +
+            "UNION ALL " +
+            "(SELECT * FROM conversation_summaries WHERE high_user_id = :userId AND low_user_id <> :userId " +
+            "AND last_message_id < :before ORDER BY last_message_id DESC LIMIT :limit)" +
+            ") inbox ORDER BY last_message_id DESC LIMIT :limit";
+
+    /**
+     * @param before Exclusive upper bound on lastMessageId; Long.MAX_VALUE for the first page
+     */
+    @Query(value = INBOX_SQL, nativeQuery = true)
+    List<ConversationSummary> findInbox(@Param("userId") Long userId, @Param("before") Long before, @Param("limit") int limit);
+
+    @Query("SELECT s FROM ConversationSummary s WHERE (s.lowUserId = :userId OR s.highUserId = :userId) " +
+            "ORDER BY s.lastMessageId DESC")
+    List<ConversationSummary> findAllForUser(@Param("userId") Long userId);
+
+    @Query("SELECT CASE WHEN s.lowUserId = :userId THEN s.highUserId ELSE s.lowUserId END " +
+            "FROM ConversationSummary s WHERE s.lowUserId = :userId OR s.highUserId = :userId")
+    List<Long> findPartnerIds(@Param("userId") Long userId);
+
+    /**
+     * @param userIds The users whose chat partners are wanted
+     * @return The {@code [lowUserId, highUserId]} pair of every conversation involving one of them
+     */
+    @Query("SELECT s.lowUserId, s.highUserId FROM ConversationSummary s " +
+            "WHERE s.lowUserId IN :userIds OR s.highUserId IN :userIds")
+    List<Object[]> findPairsForUsers(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Records a new message on the pair's summary, creating the row for the first message.
+     * The last-message fields only move forward, so a transaction committing an older message
+     * late cannot roll them back. MySQL applies the assignments left to right, so
+     * last_message_id is compared by the others before it is updated itself.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO conversation_summaries (low_user_id, high_user_id, last_message_id, " +
+            "last_message_preview, last_message_at, last_sender_id, unread_low, unread_high) " +
+            "VALUES (:lowUserId, :highUserId, :messageId, :preview, :at, :senderId, :unreadLowDelta, :unreadHighDelta) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "last_message_preview = CASE WHEN last_message_id < :messageId THEN :preview ELSE last_message_preview END, " +
+            "last_message_at = CASE WHEN last_message_id < :messageId THEN :at ELSE last_message_at END, " +
+            "last_sender_id = CASE WHEN last_message_id < :messageId THEN :senderId ELSE last_sender_id END, " +
+            "unread_low = unread_low + :unreadLowDelta, " +
+            "unread_high = unread_high + :unreadHighDelta, " +
+            "last_message_id = CASE WHEN last_message_id < :messageId THEN :messageId ELSE last_message_id END",
+            nativeQuery = true)
+    int recordMessage(@Param("lowUserId") Long lowUserId,
+                      @Param("highUserId") Long highUserId,
+                      @Param("messageId") Long messageId,
+                      @Param("preview") String preview,
+                      @Param("at") LocalDateTime at,
+                      @Param("senderId") Long senderId,
+                      @Param("unreadLowDelta") int unreadLowDelta,
+                      @Param("unreadHighDelta") int unreadHighDelta);
+
+    @Modifying
+    @Query("UPDATE ConversationSummary s SET " +
+            "s.unreadLow = CASE WHEN s.unreadLow > :unreadLowDelta THEN s.unreadLow - :unreadLowDelta ELSE 0 END, " +
+            "s.unreadHigh = CASE WHEN s.unreadHigh > :unreadHighDelta THEN s.unreadHigh - :unreadHighDelta ELSE 0 END " +
+            "WHERE s.lowUserId = :lowUserId AND s.highUserId = :highUserId")
+    int decrementUnread(@Param("lowUserId") Long lowUserId,
+                        @Param("highUserId") Long highUserId,
+                        @Param("unreadLowDelta") int unreadLowDelta,
+                        @Param("unreadHighDelta") int unreadHighDelta);
+
+    @Modifying
+    @Query("DELETE FROM ConversationSummary s WHERE s.lowUserId = :userId OR s.highUserId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+
+    /**
+     * Creates the missing summaries of conversations whose latest message lies in the given id
+     * range. A summary that recordMessage creates meanwhile is left as it is.
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO conversation_summaries (low_user_id, high_user_id, last_message_id, last_message_preview, " +
+            "last_message_at, last_sender_id, unread_low, unread_high) " +
+            "SELECT m.low_user_id, m.high_user_id, m.message_id, SUBSTRING(m.content, 1, " + ConversationSummary.PREVIEW_LENGTH + "), " +
+            "m.timestamp, m.sender_id, " +
+            "(SELECT COUNT(*) FROM messages u WHERE u.low_user_id = m.low_user_id AND u.high_user_id = m.high_user_id " +
+            "AND u.receiver_id = m.low_user_id AND u.status <> 'READ'), " +
+            "(SELECT COUNT(*) FROM messages u WHERE u.low_user_id = m.low_user_id AND u.high_user_id = m.high_user_id " +
+            "AND u.receiver_id = m.high_user_id AND u.status <> 'READ') " +
+            "FROM messages m " +
+            "WHERE m.message_id > :afterMessageId AND m.message_id <= :upToMessageId " +
+            "AND m.message_id = (SELECT MAX(x.message_id) FROM messages x " +
+            "WHERE x.low_user_id = m.low_user_id AND x.high_user_id = m.high_user_id) " +
+            "AND NOT EXISTS (SELECT 1 FROM conversation_summaries s " +
+            "WHERE s.low_user_id = m.low_user_id AND s.high_user_id = m.high_user_id)", nativeQuery = true)
+    int backfillMissing(@Param("afterMessageId") Long afterMessageId, @Param("upToMessageId") Long upToMessageId);
+}
@@ -0,0 +1,9 @@
+package com.sapp.social.repository;
+
+import com.sapp.social.model.DataMigration;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DataMigrationRepository extends JpaRepository<DataMigration, String> {
+}
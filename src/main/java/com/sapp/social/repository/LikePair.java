@@ -0,0 +1,9 @@
+package com.sapp.social.repository;
+
+/**
+ * Projection of a like as (postId, userId), used to build in-memory like indexes
+ */
+public interface LikePair {
+    Long getPostId();
+    Long getUserId();
+}
@@ -0,0 +1,24 @@
+package com.sapp.social.repository;
+
+import com.sapp.social.model.Like;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface LikeRepository extends JpaRepository<Like, Long> {
+    Optional<Like> findByUserUserIdAndPostPostId(Long userId, Long postId);
+    boolean existsByUserUserIdAndPostPostId(Long userId, Long postId);
+
+    @EntityGraph(attributePaths = "user")
+    List<Like> findByPostPostId(Long postId);
+
+    @Query("SELECT l.post.postId AS postId, l.user.userId AS userId FROM Like l WHERE l.post.postId IN :postIds")
+    List<LikePair> findLikePairsByPostIds(@Param("postIds") Collection<Long> postIds);
+}
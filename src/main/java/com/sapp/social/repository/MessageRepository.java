@@ -2,15 +2,21 @@ package com.sapp.social.repository;
 
 import com.sapp.social.model.Message;
 import com.sapp.social.model.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
+    @EntityGraph(attributePaths = {"sender", "receiver"})
     @Query("SELECT m FROM Message m WHERE (m.sender = ?1 AND m.receiver = ?2) OR (m.sender = ?2 AND m.receiver = ?1) ORDER BY m.messageId ASC")
     List<Message> findConversation(User sender, User receiver);
 
@@ -23,4 +29,44 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
 
     @Query("SELECT DISTINCT m.receiver FROM Message m WHERE m.sender = ?1")
     List<User> findDistinctReceiversBySender(User sender);
+
+    // Conversation pages seek on (lowUserId, highUserId, messageId), newest first
+
+    @EntityGraph(attributePaths = {"sender", "receiver"})
+    List<Message> findByLowUserIdAndHighUserIdOrderByMessageIdDesc(Long lowUserId, Long highUserId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"sender", "receiver"})
+    List<Message> findByLowUserIdAndHighUserIdAndMessageIdLessThanOrderByMessageIdDesc(
+            Long lowUserId, Long highUserId, Long before, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"sender", "receiver"})
+    List<Message> findByMessageIdIn(Collection<Long> messageIds);
+
+    // Receipts move every message a user received in the conversation up to a watermark at once
+
+    @Modifying
+    @Query("UPDATE Message m SET m.status = com.sapp.social.model.Message.MessageStatus.READ " +
+            "WHERE m.lowUserId = :lowUserId AND m.highUserId = :highUserId AND m.messageId <= :upToMessageId " +
+            "AND m.receiver.userId = :readerId AND m.status <> com.sapp.social.model.Message.MessageStatus.READ")
+    int markReadUpTo(@Param("lowUserId") Long lowUserId,
+                     @Param("highUserId") Long highUserId,
+                     @Param("readerId") Long readerId,
+                     @Param("upToMessageId") Long upToMessageId);
+
+    @Modifying
+    @Query("UPDATE Message m SET m.status = com.sapp.social.model.Message.MessageStatus.DELIVERED " +
+            "WHERE m.lowUserId = :lowUserId AND m.highUserId = :highUserId AND m.messageId <= :upToMessageId " +
+            "AND m.receiver.userId = :receiverId AND m.status = com.sapp.social.model.Message.MessageStatus.SENT")
+    int markDeliveredUpTo(@Param("lowUserId") Long lowUserId,
+                          @Param("highUserId") Long highUserId,
+                          @Param("receiverId") Long receiverId,
+                          @Param("upToMessageId") Long upToMessageId);
+
+    @Modifying
+    @Query(value = "UPDATE messages SET low_user_id = LEAST(sender_id, receiver_id), " +
+            "high_user_id = GREATEST(sender_id, receiver_id) WHERE low_user_id IS NULL LIMIT :limit", nativeQuery = true)
+    int backfillConversationKeys(@Param("limit") int limit);
+
+    @Query("SELECT COALESCE(MAX(m.messageId), 0) FROM Message m")
+    long findMaxMessageId();
 }
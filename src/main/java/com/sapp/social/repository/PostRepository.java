@@ -1,14 +1,74 @@
 package com.sapp.social.repository;
 
 import com.sapp.social.model.Post;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
-    List<Post> findByUserUserIdOrderByPostIdDesc(Long userId);
-    List<Post> findAllByOrderByPostIdDesc();
+    // Feed pages select ids only; PostHydrator loads the rows for a page in batch
+
+    @Query("SELECT p.postId FROM Post p ORDER BY p.postId DESC")
+    List<Long> findRecentPostIds(Pageable pageable);
+
+    @Query("SELECT p.postId FROM Post p WHERE p.postId < :before ORDER BY p.postId DESC")
+    List<Long> findPostIdsBefore(@Param("before") Long before, Pageable pageable);
+
+    @Query("SELECT p.postId FROM Post p WHERE p.postId IN :postIds")
+    List<Long> findExistingPostIds(@Param("postIds") Collection<Long> postIds);
+
+    @Query("SELECT p.postId FROM Post p WHERE p.user.userId = :userId ORDER BY p.postId DESC")
+    List<Long> findRecentPostIdsByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT p.postId FROM Post p WHERE p.user.userId = :userId AND p.postId < :before ORDER BY p.postId DESC")
+    List<Long> findPostIdsByUserIdBefore(@Param("userId") Long userId, @Param("before") Long before, Pageable pageable);
+
+    @EntityGraph(attributePaths = "user")
+    @Query("SELECT p FROM Post p WHERE p.postId IN :postIds")
+    List<Post> findWithUserByPostIdIn(@Param("postIds") Collection<Long> postIds);
+
     void deleteByPostIdAndUserUserId(Long postId, Long userId);
+
+    @Query("SELECT p.likeCount FROM Post p WHERE p.postId = :postId")
+    Optional<Long> findLikeCountByPostId(@Param("postId") Long postId);
+
+    @Query("SELECT p.commentCount FROM Post p WHERE p.postId = :postId")
+    Optional<Long> findCommentCountByPostId(@Param("postId") Long postId);
+
+    // Single-statement counter updates so concurrent likes and comments never lose an increment
+
+    @Modifying
+    @Query("UPDATE Post p SET p.likeCount = p.likeCount + :delta WHERE p.postId = :postId")
+    int adjustLikeCount(@Param("postId") Long postId, @Param("delta") long delta);
+
+    @Modifying
+    @Query("UPDATE Post p SET p.commentCount = p.commentCount + :delta WHERE p.postId = :postId")
+    int adjustCommentCount(@Param("postId") Long postId, @Param("delta") long delta);
+
+    @Query("SELECT COALESCE(MAX(p.postId), 0) FROM Post p")
+    long findMaxPostId();
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Post p SET p.likeCount = (SELECT COUNT(l) FROM Like l WHERE l.post = p) " +
+            "WHERE p.postId > :fromId AND p.postId <= :toId " +
+            "AND p.likeCount <> (SELECT COUNT(l) FROM Like l WHERE l.post = p)")
+    int reconcileLikeCounts(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Post p SET p.commentCount = (SELECT COUNT(c) FROM Comment c WHERE c.post = p) " +
+            "WHERE p.postId > :fromId AND p.postId <= :toId " +
+            "AND p.commentCount <> (SELECT COUNT(c) FROM Comment c WHERE c.post = p)")
+    int reconcileCommentCounts(@Param("fromId") Long fromId, @Param("toId") Long toId);
 }
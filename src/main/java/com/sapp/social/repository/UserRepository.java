@@ -2,8 +2,11 @@ package com.sapp.social.repository;
 
 import com.sapp.social.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,4 +16,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
     boolean existsByUserName(String username);
     Optional<User> findByProviderAndProviderId(String provider, String providerId);
+
+    // The prefix must have LIKE wildcards escaped with '!'
+    @Query("SELECT u.userName FROM User u WHERE u.userName LIKE CONCAT(:prefix, '%') ESCAPE '!'")
+    List<String> findUserNamesStartingWith(@Param("prefix") String prefix);
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.sapp.social.security;
+
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The principal of an authenticated request. Carries the user's id and name next to the email,
+ * so handlers taking a {@link CurrentUser} argument never have to look the user up again.
+ */
+public class AuthenticatedUser implements UserDetails, CredentialsContainer {
+
+    private final Long userId;
+    private final String userName;
+    private final String email;
+    private String password;
+    private final boolean enabled;
+
+    public AuthenticatedUser(Long userId, String userName, String email, String password, boolean enabled) {
+        this.userId = userId;
+        this.userName = userName;
+        this.email = email;
+        this.password = password;
+        this.enabled = enabled;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * @return the email, which is the login name and the JWT subject
+     */
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of();
+    }
+
+    @Override
+    public void eraseCredentials() {
+        password = null;
+    }
+}
@@ -4,19 +4,21 @@ import com.sapp.social.model.User;
 import com.sapp.social.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
-
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     @Override
     @Transactional
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
@@ -24,28 +26,50 @@ public class CustomUserDetailsService implements UserDetailsService {
                 .orElseThrow(() ->
                         new UsernameNotFoundException("User not found with email : " + email));
 
-        return new org.springframework.security.core.userdetails.User(
+        return new AuthenticatedUser(
+                user.getUserId(),
+                user.getUserName(),
                 user.getEmail(),
                 user.getPassword(),
-                user.isEnabled(),
-                true, true, true,
-                new ArrayList<>()
+                user.isEnabled()
         );
     }
 
-    // This method is used by JWTAuthenticationFilter
     @Transactional
     public UserDetails loadUserById(Long id) {
         User user = userRepository.findById(id)
                 .orElseThrow(() ->
                         new UsernameNotFoundException("User not found with id : " + id));
 
-        return new org.springframework.security.core.userdetails.User(
+        return new AuthenticatedUser(
+                user.getUserId(),
+                user.getUserName(),
                 user.getEmail(),
                 user.getPassword(),
-                user.isEnabled(),
-                true, true, true,
-                new ArrayList<>()
+                user.isEnabled()
+        );
+    }
+
+    /**
+     * Stores a password rehashed at the current BCrypt strength. Spring Security calls this
+     * after a successful login whose stored hash used a different cost.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByEmail(userDetails.getUsername())
+                .orElseThrow(() ->
+                        new UsernameNotFoundException("User not found with email : " + userDetails.getUsername()));
+        user.setPassword(newPassword);
+        userRepository.save(user);
+        principalCache.invalidate(user.getEmail());
+
+        return new AuthenticatedUser(
+                user.getUserId(),
+                user.getUserName(),
+                user.getEmail(),
+                newPassword,
+                user.isEnabled()
         );
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,16 @@
 package com.sapp.social.security;
 
+import com.sapp.social.repository.UserRepository;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SecurityException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -11,10 +18,23 @@ import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-
+import java.util.Optional;
+
+/**
+ * Issues and verifies the API's JWTs. The signing key and parser are built once. Verified
+ * claims are cached under the SHA-256 digest of the token until the token expires, so a client
+ * presenting the same token on every request pays for the signature check once. The cache holds
+ * {@code app.jwt.cache-size} tokens and evicts the least recently used one to admit a new token.
+ */
 @Component
 public class JwtTokenProvider {
 
@@ -26,12 +46,62 @@ public class JwtTokenProvider {
     @Value("${app.jwt.expiration:86400000}")
     private int jwtExpirationMs;
 
+    @Value("${app.jwt.cache-size:10000}")
+    private int cacheSize;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private SecretKey key;
+    private JwtParser parser;
+
+    // Token digest -> verified claims, least recently used evicted first
+    private Map<String, Claims> verified;
+
+    private Counter cacheHits;
+    private Counter cacheMisses;
+    private Timer verifyTimer;
+
+    @PostConstruct
+    void init() {
+        key = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        parser = Jwts.parserBuilder().setSigningKey(key).build();
+        verified = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Claims> eldest) {
+                return size() > cacheSize;
+            }
+        });
+
+        cacheHits = Counter.builder("jwt.cache.requests")
+                .tag("result", "hit")
+                .description("Token checks answered from the verified-claims cache")
+                .register(meterRegistry);
+        cacheMisses = Counter.builder("jwt.cache.requests")
+                .tag("result", "miss")
+                .description("Token checks that needed a signature verification")
+                .register(meterRegistry);
+        verifyTimer = Timer.builder("jwt.verify")
+                .description("Time to parse and verify a token")
+                .register(meterRegistry);
+    }
+
+    public static final String USER_ID_CLAIM = "userId";
+    public static final String USER_NAME_CLAIM = "userName";
+
     public String generateToken(Authentication authentication) {
         String username;
         Map<String, Object> claims = new HashMap<>();
 
         // Handle both UserDetails and OAuth2User
-        if (authentication.getPrincipal() instanceof UserDetails) {
+        if (authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            username = user.getUsername();
+            claims.put(USER_ID_CLAIM, user.getUserId());
+            claims.put(USER_NAME_CLAIM, user.getUserName());
+        } else if (authentication.getPrincipal() instanceof UserDetails) {
             UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
             username = userPrincipal.getUsername();
         } else if (authentication.getPrincipal() instanceof OAuth2User) {
@@ -46,11 +116,18 @@ public class JwtTokenProvider {
             throw new IllegalArgumentException("Unsupported principal type");
         }
 
+        if (!claims.containsKey(USER_ID_CLAIM)) {
+            // OAuth2 logins carry no user id; look it up once here rather than on every request
+            String email = username;
+            userRepository.findByEmail(email).ifPresent(user -> {
+                claims.put(USER_ID_CLAIM, user.getUserId());
+                claims.put(USER_NAME_CLAIM, user.getUserName());
+            });
+        }
+
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpirationMs);
 
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes());
-
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(username)
@@ -60,32 +137,80 @@ public class JwtTokenProvider {
                 .compact();
     }
 
-    public String getUsernameFromJWT(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes());
-
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    /**
+     * Verifies a token and returns its claims, from the cache when the same token was verified
+     * before
+     * @param token The compact JWT
+     * @return The claims, or empty if the token is invalid or expired
+     */
+    public Optional<Claims> getVerifiedClaims(String token) {
+        if (token == null || token.isEmpty()) {
+            logger.error("JWT claims string is empty");
+            return Optional.empty();
+        }
 
-        return claims.getSubject();
-    }
+        String digest = digest(token);
+        Claims claims = verified.get(digest);
+        if (claims != null) {
+            if (claims.getExpiration().after(new Date())) {
+                cacheHits.increment();
+                return Optional.of(claims);
+            }
+            verified.remove(digest);
+            logger.error("Expired JWT token");
+            return Optional.empty();
+        }
 
-    public boolean validateToken(String authToken) {
+        cacheMisses.increment();
         try {
-            SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes());
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken);
-            return true;
+            claims = verifyTimer.record(() -> parser.parseClaimsJws(token).getBody());
         } catch (MalformedJwtException ex) {
             logger.error("Invalid JWT token");
+            return Optional.empty();
+        } catch (SecurityException ex) {
+            logger.error("Invalid JWT signature");
+            return Optional.empty();
         } catch (ExpiredJwtException ex) {
             logger.error("Expired JWT token");
+            return Optional.empty();
         } catch (UnsupportedJwtException ex) {
             logger.error("Unsupported JWT token");
+            return Optional.empty();
         } catch (IllegalArgumentException ex) {
             logger.error("JWT claims string is empty");
+            return Optional.empty();
         }
-        return false;
+
+        if (claims.getExpiration() != null) {
+            verified.put(digest, claims);
+        }
+        return Optional.of(claims);
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the user id carried by the token, or null for tokens issued before it was added
+     */
+    public static Long getUserId(Claims claims) {
+        Number userId = claims.get(USER_ID_CLAIM, Number.class);
+        return userId != null ? userId.longValue() : null;
+    }
+
+    public String getUsernameFromJWT(String token) {
+        return getVerifiedClaims(token)
+                .map(Claims::getSubject)
+                .orElseThrow(() -> new JwtException("Invalid JWT token"));
+    }
+
+    public boolean validateToken(String authToken) {
+        return getVerifiedClaims(authToken).isPresent();
     }
-}
\ No newline at end of file
+}
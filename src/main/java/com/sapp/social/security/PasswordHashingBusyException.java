@@ -0,0 +1,19 @@
+package com.sapp.social.security;
+
+/**
+ * Thrown when the password hashing executor has no room for another hash. Handlers answer
+ * 503 with a Retry-After of {@link #getRetryAfterSeconds()}.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public PasswordHashingBusyException(int retryAfterSeconds) {
+        super("Too many sign-in requests, try again shortly");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
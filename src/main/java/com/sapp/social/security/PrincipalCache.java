@@ -0,0 +1,85 @@
+package com.sapp.social.security;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Short-lived cache of the principals JwtAuthenticationFilter loads, keyed by email (the JWT
+ * subject), so that repeat requests with a valid token do not query the users table. Entries
+ * live for {@code app.auth.principal-cache.ttl-ms}; account changes evict them explicitly. At
+ * {@code app.auth.principal-cache.max-size} entries the least recently used one makes room.
+ */
+@Component
+public class PrincipalCache {
+
+    @Value("${app.auth.principal-cache.ttl-ms:60000}")
+    private long ttlMs;
+
+    @Value("${app.auth.principal-cache.max-size:10000}")
+    private int maxSize;
+
+    // Least recently used evicted first; expired entries are replaced when next read
+    private Map<String, Entry> principals;
+
+    @PostConstruct
+    void init() {
+        principals = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Returns the cached principal for an email, loading and caching it on a miss or after
+     * the entry's TTL
+     * @param email The JWT subject
+     * @param loader Loads the principal from the database
+     * @return The principal
+     */
+    public UserDetails get(String email, Function<String, UserDetails> loader) {
+        long now = System.currentTimeMillis();
+        Entry entry = principals.get(email);
+        if (entry != null && entry.expiresAt() > now) {
+            return entry.principal();
+        }
+
+        UserDetails principal = loader.apply(email);
+        principals.put(email, new Entry(principal, now + ttlMs));
+        return principal;
+    }
+
+    /**
+     * Drops the cached principal for an email. Inside a transaction the entry is dropped again
+     * after commit, so a request that reloads it before the change commits cannot keep the old
+     * state cached.
+     * @param email The email of the changed account
+     */
+    public void invalidate(String email) {
+        if (email == null) {
+            return;
+        }
+        principals.remove(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    principals.remove(email);
+                }
+            });
+        }
+    }
+
+    private record Entry(UserDetails principal, long expiresAt) {
+    }
+}
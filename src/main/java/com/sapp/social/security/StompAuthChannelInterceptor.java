@@ -0,0 +1,78 @@
+package com.sapp.social.security;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+
+/**
+ * Authenticates STOMP sessions with the same JWT the REST API accepts, sent as the
+ * Authorization header of the CONNECT frame. The session principal is named after the user id,
+ * so user destinations resolve to /user/{userId}/queue/...
+ */
+@Component
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    @Autowired
+    private CustomUserDetailsService customUserDetailsService;
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+            String jwt = getJwtFromHeaders(accessor);
+            if (!StringUtils.hasText(jwt)) {
+                throw new BadCredentialsException("Invalid or missing token");
+            }
+            Claims claims = tokenProvider.getVerifiedClaims(jwt)
+                    .orElseThrow(() -> new BadCredentialsException("Invalid or missing token"));
+            AuthenticatedUser user = loadUser(claims);
+            Long tokenUserId = JwtTokenProvider.getUserId(claims);
+            if (!user.isEnabled() || (tokenUserId != null && !tokenUserId.equals(user.getUserId()))) {
+                throw new BadCredentialsException("User not found");
+            }
+            accessor.setUser(new UsernamePasswordAuthenticationToken(user.getUserId().toString(), null, List.of()));
+        } else if ((StompCommand.SEND.equals(accessor.getCommand()) || StompCommand.SUBSCRIBE.equals(accessor.getCommand()))
+                && accessor.getUser() == null) {
+            throw new BadCredentialsException("Not connected");
+        }
+        return message;
+    }
+
+    private AuthenticatedUser loadUser(Claims claims) {
+        try {
+            return (AuthenticatedUser) principalCache.get(claims.getSubject(), customUserDetailsService::loadUserByUsername);
+        } catch (UsernameNotFoundException e) {
+            throw new BadCredentialsException("User not found");
+        }
+    }
+
+    private String getJwtFromHeaders(StompHeaderAccessor accessor) {
+        String bearerToken = accessor.getFirstNativeHeader("Authorization");
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
+            return bearerToken.substring(7);
+        }
+        return null;
+    }
+}
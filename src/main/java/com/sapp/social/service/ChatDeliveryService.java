@@ -0,0 +1,99 @@
+package com.sapp.social.service;
+
+import com.sapp.social.dto.MessageResponse;
+import com.sapp.social.dto.ReceiptResponse;
+import com.sapp.social.event.MessageSentEvent;
+import com.sapp.social.event.ReceiptEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes saved chat messages to both participants over STOMP, and receipts to the sender. Messages bound for the same user
+ * within one flush interval go out as a single frame holding a list, so a burst costs one send
+ * per user session instead of one per message.
+ */
+@Service
+public class ChatDeliveryService {
+
+    public static final String MESSAGES_DESTINATION = "/queue/messages";
+    public static final String RECEIPTS_DESTINATION = "/queue/receipts";
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.chat.delivery.max-batch-size:100}")
+    private int maxBatchSize;
+
+    private final Map<Long, List<MessageResponse>> pending = new ConcurrentHashMap<>();
+
+    private Counter framesSent;
+    private Counter messagesSent;
+
+    @PostConstruct
+    void registerMetrics() {
+        framesSent = Counter.builder("chat.delivery.frames")
+                .description("STOMP frames pushed to chat users")
+                .register(meterRegistry);
+        messagesSent = Counter.builder("chat.delivery.messages")
+                .description("Chat messages pushed to chat users")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMessageSent(MessageSentEvent event) {
+        MessageResponse message = event.getMessage();
+        enqueue(message.getReceiverId(), message);
+        // The sender's other sessions see their own message too
+        if (!message.getSenderId().equals(message.getReceiverId())) {
+            enqueue(message.getSenderId(), message);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onReceipt(ReceiptEvent event) {
+        // Already coalesced by ReceiptCoalescer, so receipts go out without waiting for a flush
+        messagingTemplate.convertAndSendToUser(event.getOtherUserId().toString(), RECEIPTS_DESTINATION,
+                new ReceiptResponse(event.getUserId(), event.getUpToMessageId(), event.getStatus()));
+    }
+
+    private void enqueue(Long userId, MessageResponse message) {
+        pending.compute(userId, (id, queued) -> {
+            List<MessageResponse> batch = queued != null ? queued : new ArrayList<>();
+            batch.add(message);
+            return batch;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.chat.delivery.flush-interval-ms:20}")
+    public void flush() {
+        for (Long userId : pending.keySet()) {
+            // Removing swaps the batch out atomically; later messages start a fresh one
+            List<MessageResponse> batch = pending.remove(userId);
+            if (batch == null) {
+                continue;
+            }
+            for (int from = 0; from < batch.size(); from += maxBatchSize) {
+                List<MessageResponse> frame = batch.subList(from, Math.min(from + maxBatchSize, batch.size()));
+                messagingTemplate.convertAndSendToUser(userId.toString(), MESSAGES_DESTINATION, new ArrayList<>(frame));
+                framesSent.increment();
+                messagesSent.increment(frame.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.sapp.social.service;
+
+import com.sapp.social.model.Comment;
+import com.sapp.social.repository.CommentRepository;
+import com.sapp.social.util.CommentPaths;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Fills in the materialized path of comments written before the column existed. Runs once at
+ * startup, oldest comments first so a parent's path is always known before its replies'.
+ */
+@Component
+public class CommentPathBackfill implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommentPathBackfill.class);
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.comments.path-backfill-batch-size:500}")
+    private int batchSize;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long filled = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(status -> fillBatch());
+            filled += batch;
+        } while (batch == batchSize);
+
+        if (filled > 0) {
+            logger.info("Backfilled paths on {} comments", filled);
+        }
+    }
+
+    private int fillBatch() {
+        List<Comment> comments = commentRepository.findByPathIsNullOrderByCommentIdAsc(PageRequest.ofSize(batchSize));
+        for (Comment comment : comments) {
+            Comment parent = comment.getParentComment();
+            String parentPath = parent != null ? parent.getPath() : null;
+            if (parent != null && parentPath == null) {
+                throw new IllegalStateException("Comment " + comment.getCommentId() + " is older than its parent");
+            }
+            comment.setPath(CommentPaths.childPath(parentPath, comment.getCommentId()));
+        }
+        return comments.size();
+    }
+}
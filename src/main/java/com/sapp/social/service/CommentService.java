@@ -2,26 +2,40 @@ package com.sapp.social.service;
 
 
 import com.sapp.social.dto.CommentResponse;
+import com.sapp.social.dto.CommentThread;
+import com.sapp.social.dto.FeedPage;
 import com.sapp.social.model.Comment;
 import com.sapp.social.model.Post;
 import com.sapp.social.model.User;
 import com.sapp.social.repository.CommentRepository;
 import com.sapp.social.repository.PostRepository;
 import com.sapp.social.repository.UserRepository;
+import com.sapp.social.util.CommentPaths;
+import com.sapp.social.util.CursorUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class CommentService {
 
+    public static final int DEFAULT_THREAD_PAGE_SIZE = 10;
+    public static final int MAX_THREAD_PAGE_SIZE = 50;
+    public static final int DEFAULT_REPLY_PREVIEW_SIZE = 3;
+    public static final int DEFAULT_REPLY_PAGE_SIZE = 20;
+    public static final int MAX_REPLY_PAGE_SIZE = 100;
+
     @Autowired
     private CommentRepository commentRepository;
 
@@ -51,21 +65,177 @@ public class CommentService {
             comment.setParentComment(parentComment);
         }
 
-        return commentRepository.save(comment);
+        String parentPath = null;
+        if (comment.getParentComment() != null) {
+            parentPath = pathOf(comment.getParentComment());
+            if (CommentPaths.depth(parentPath) >= CommentPaths.MAX_DEPTH) {
+                throw new RuntimeException("Reply chain is too deep");
+            }
+        }
+
+        // The path ends with the comment's own id, so it is set once the insert has assigned it
+        comment = commentRepository.save(comment);
+        comment.setPath(CommentPaths.childPath(parentPath, comment.getCommentId()));
+        postRepository.adjustCommentCount(postId, 1);
+        return comment;
     }
 
+    // Comments older than the path column get theirs from CommentPathBackfill, which runs while
+    // the server already takes traffic; until then the path is rebuilt from the parent chain
+    private String pathOf(Comment comment) {
+        if (comment.getPath() != null) {
+            return comment.getPath();
+        }
+        Deque<Long> ids = new ArrayDeque<>();
+        Comment current = comment;
+        while (current != null && current.getPath() == null) {
+            if (ids.size() >= CommentPaths.MAX_DEPTH) {
+                throw new RuntimeException("Reply chain is too deep");
+            }
+            ids.push(current.getCommentId());
+            current = current.getParentComment();
+        }
+        String path = current != null ? current.getPath() : null;
+        for (Long id : ids) {
+            path = CommentPaths.childPath(path, id);
+        }
+        return path;
+    }
+
+    /**
+     * Loads a post's whole comment thread with a single query and assembles the reply tree
+     * in memory. Top-level comments are returned newest first, replies oldest first.
+     * @param postId The post whose comments to load
+     * @return The top-level comments with their nested replies
+     */
     public List<CommentResponse> getPostComments(Long postId) {
-        // Get all top-level comments
-        List<Comment> topLevelComments = commentRepository.findByPostPostIdAndParentCommentIsNullOrderByCreatedAtDesc(postId);
+        List<Comment> comments = commentRepository.findByPostPostIdOrderByCreatedAtAscCommentIdAsc(postId);
+
+        Map<Long, CommentResponse> responsesById = new HashMap<>();
+        for (Comment comment : comments) {
+            responsesById.put(comment.getCommentId(), toCommentResponse(comment));
+        }
+
+        // Walking in ascending order appends each reply list oldest first
+        List<CommentResponse> topLevel = new ArrayList<>();
+        for (Comment comment : comments) {
+            CommentResponse response = responsesById.get(comment.getCommentId());
+            if (response.getParentCommentId() == null) {
+                topLevel.add(response);
+            } else {
+                CommentResponse parent = responsesById.get(response.getParentCommentId());
+                if (parent != null) {
+                    parent.getReplies().add(response);
+                }
+            }
+        }
+        Collections.reverse(topLevel);
+        return topLevel;
+    }
+
+    /**
+     * Pages a post's top-level comments newest first, each with the first replies of its thread
+     * in depth-first order. One range scan for the page, one per thread for its replies.
+     * @param postId The post whose comments to load
+     * @param cursor The cursor from the previous page, or null for the first page
+     * @param limit Maximum number of threads to return
+     * @param replyLimit Maximum number of replies to preview per thread
+     * @return The page of threads
+     */
+    @Transactional(readOnly = true)
+    public FeedPage<CommentThread> getCommentThreads(Long postId, String cursor, Integer limit, Integer replyLimit) {
+        int size = clamp(limit, DEFAULT_THREAD_PAGE_SIZE, MAX_THREAD_PAGE_SIZE);
+        int replies = clamp(replyLimit, DEFAULT_REPLY_PREVIEW_SIZE, MAX_REPLY_PAGE_SIZE);
+        Long before = CursorUtils.decode(cursor);
+
+        PageRequest page = PageRequest.ofSize(size + 1);
+        List<Comment> roots = before == null
+                ? commentRepository.findByPostPostIdAndParentCommentIsNullOrderByCommentIdDesc(postId, page)
+                : commentRepository.findByPostPostIdAndParentCommentIsNullAndCommentIdLessThanOrderByCommentIdDesc(postId, before, page);
+
+        boolean hasMore = roots.size() > size;
+        if (hasMore) {
+            roots = roots.subList(0, size);
+        }
+
+        List<CommentThread> threads = new ArrayList<>(roots.size());
+        for (Comment root : roots) {
+            CommentResponse rootResponse = toCommentResponse(root);
+            FeedPage<CommentResponse> firstReplies = loadPathRange(
+                    CommentPaths.descendantsFrom(root.getPath()), root.getPath(), replies);
+            rootResponse.getReplies().addAll(firstReplies.getItems());
+            threads.add(new CommentThread(rootResponse, firstReplies.getNextCursor(), firstReplies.isHasMore()));
+        }
+
+        String nextCursor = hasMore ? CursorUtils.encode(roots.get(roots.size() - 1).getCommentId()) : null;
+        return new FeedPage<>(threads, nextCursor, hasMore);
+    }
+
+    /**
+     * Pages the replies below a comment in depth-first order. Each page is returned as subtrees:
+     * a reply whose parent was on an earlier page is a root of the page and names that parent
+     * through parentCommentId.
+     * @param commentId The comment whose replies to load, at any depth of the thread
+     * @param cursor The cursor from the previous page or thread preview, or null for the first page
+     * @param limit Maximum number of replies to return
+     * @return The page of replies
+     */
+    @Transactional(readOnly = true)
+    public FeedPage<CommentResponse> getReplies(Long commentId, String cursor, Integer limit) {
+        int size = clamp(limit, DEFAULT_REPLY_PAGE_SIZE, MAX_REPLY_PAGE_SIZE);
+        String after = CursorUtils.decodeKey(cursor);
 
-        // Convert to response DTOs with replies
-        return topLevelComments.stream()
-                .map(this::convertToCommentResponseWithReplies)
-                .collect(Collectors.toList());
+        String rootPath;
+        if (after == null) {
+            rootPath = commentRepository.findPathByCommentId(commentId)
+                    .orElseThrow(() -> new RuntimeException("Comment not found"));
+            after = CommentPaths.descendantsFrom(rootPath);
+        } else {
+            // The cursor holds a path inside the subtree, which already spells out the root's path
+            rootPath = CommentPaths.ancestorPath(after, commentId);
+            if (rootPath == null) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+        return loadPathRange(after, rootPath, size);
     }
 
-    private CommentResponse convertToCommentResponseWithReplies(Comment comment) {
-        CommentResponse response = new CommentResponse(
+    private FeedPage<CommentResponse> loadPathRange(String after, String rootPath, int size) {
+        List<Comment> comments = commentRepository.findPathRange(
+                after, CommentPaths.subtreeUpperBound(rootPath), PageRequest.ofSize(size + 1));
+
+        boolean hasMore = comments.size() > size;
+        if (hasMore) {
+            comments = comments.subList(0, size);
+        }
+
+        // Path order puts every parent before its replies, so one pass links the page up
+        Map<Long, CommentResponse> responsesById = new HashMap<>();
+        List<CommentResponse> roots = new ArrayList<>();
+        for (Comment comment : comments) {
+            CommentResponse response = toCommentResponse(comment);
+            responsesById.put(response.getCommentId(), response);
+            CommentResponse parent = responsesById.get(response.getParentCommentId());
+            if (parent != null) {
+                parent.getReplies().add(response);
+            } else {
+                roots.add(response);
+            }
+        }
+
+        String nextCursor = hasMore ? CursorUtils.encodeKey(comments.get(comments.size() - 1).getPath()) : null;
+        return new FeedPage<>(roots, nextCursor, hasMore);
+    }
+
+    private static int clamp(Integer limit, int defaultSize, int maxSize) {
+        if (limit == null || limit <= 0) {
+            return defaultSize;
+        }
+        return Math.min(limit, maxSize);
+    }
+
+    private CommentResponse toCommentResponse(Comment comment) {
+        return new CommentResponse(
                 comment.getCommentId(),
                 comment.getContent(),
                 comment.getCreatedAt(),
@@ -75,22 +245,17 @@ public class CommentService {
                 comment.getParentComment() != null ? comment.getParentComment().getCommentId() : null,
                 new ArrayList<>()
         );
-
-        // Get replies and convert them recursively
-        List<Comment> replies = commentRepository.findByParentCommentCommentIdOrderByCreatedAtAsc(comment.getCommentId());
-        response.setReplies(
-                replies.stream()
-                        .map(this::convertToCommentResponseWithReplies)
-                        .collect(Collectors.toList())
-        );
-
-        return response;
     }
 
     public Optional<Comment> getCommentById(Long commentId) {
         return commentRepository.findById(commentId);
     }
 
+    public Optional<CommentResponse> getCommentResponse(Long commentId) {
+        return commentRepository.findWithUserByCommentId(commentId)
+                .map(this::toCommentResponse);
+    }
+
     @Transactional
     public void deleteComment(Long commentId, Long userId) {
         Comment comment = commentRepository.findById(commentId)
@@ -101,11 +266,24 @@ public class CommentService {
             throw new RuntimeException("Not authorized to delete this comment");
         }
 
+        // Replies are removed by cascade, so the counter drops by the whole subtree
+        long removed = comment.getPath() != null
+                ? commentRepository.countPathRange(comment.getPath(), CommentPaths.subtreeUpperBound(comment.getPath()))
+                : countSubtree(comment);
         commentRepository.delete(comment);
+        postRepository.adjustCommentCount(comment.getPost().getPostId(), -removed);
+    }
+
+    private long countSubtree(Comment comment) {
+        long count = 1;
+        for (Comment reply : comment.getReplies()) {
+            count += countSubtree(reply);
+        }
+        return count;
     }
 
-    public int getCommentsCount(Long postId) {
-        return commentRepository.countByPostPostId(postId);
+    public long getCommentsCount(Long postId) {
+        return postRepository.findCommentCountByPostId(postId).orElse(0L);
     }
 
     @Transactional
@@ -0,0 +1,84 @@
+package com.sapp.social.service;
+
+import com.sapp.social.model.DataMigration;
+import com.sapp.social.repository.ConversationSummaryRepository;
+import com.sapp.social.repository.DataMigrationRepository;
+import com.sapp.social.repository.MessageRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+/**
+ * Brings messages written before the conversation key and the summary table existed up to
+ * date. Runs once: each batch commits on its own so live sends are never blocked behind the
+ * whole table, and a marker row stops later startups from scanning it again.
+ */
+@Component
+public class ConversationBackfill implements ApplicationRunner {
+
+    private static final String MIGRATION = "conversation-summaries";
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationBackfill.class);
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ConversationSummaryRepository conversationSummaryRepository;
+
+    @Autowired
+    private DataMigrationRepository dataMigrationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.chat.backfill-batch-size:1000}")
+    private int batchSize;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (dataMigrationRepository.existsById(MIGRATION)) {
+            return;
+        }
+
+        long keyed = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(status -> messageRepository.backfillConversationKeys(batchSize));
+            keyed += batch;
+        } while (batch == batchSize);
+        if (keyed > 0) {
+            logger.info("Backfilled conversation keys on {} messages", keyed);
+        }
+
+        // Messages sent from now on create their own summaries, so the range ends here
+        long maxMessageId = messageRepository.findMaxMessageId();
+        long summarized = 0;
+        for (long after = 0; after < maxMessageId; after += batchSize) {
+            long from = after;
+            summarized += transactionTemplate.execute(status ->
+                    conversationSummaryRepository.backfillMissing(from, from + batchSize));
+        }
+        if (summarized > 0) {
+            logger.info("Backfilled {} conversation summaries", summarized);
+        }
+
+        dataMigrationRepository.save(new DataMigration(MIGRATION, LocalDateTime.now()));
+    }
+}
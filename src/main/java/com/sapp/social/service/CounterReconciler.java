@@ -0,0 +1,44 @@
+package com.sapp.social.service;
+
+import com.sapp.social.repository.PostRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Repairs drift in the denormalized like and comment counters on posts. Works through the
+ * posts table in id ranges, each range in its own short transaction, and only rewrites rows
+ * whose counter disagrees with the source table.
+ */
+@Component
+public class CounterReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CounterReconciler.class);
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Value("${app.counters.reconcile-batch-size:1000}")
+    private int batchSize;
+
+    @Scheduled(initialDelayString = "${app.counters.reconcile-initial-delay-ms:60000}",
+            fixedDelayString = "${app.counters.reconcile-interval-ms:3600000}")
+    public void reconcile() {
+        long maxPostId = postRepository.findMaxPostId();
+        long repairedLikes = 0;
+        long repairedComments = 0;
+
+        for (long fromId = 0; fromId < maxPostId; fromId += batchSize) {
+            long toId = fromId + batchSize;
+            repairedLikes += postRepository.reconcileLikeCounts(fromId, toId);
+            repairedComments += postRepository.reconcileCommentCounts(fromId, toId);
+        }
+
+        if (repairedLikes > 0 || repairedComments > 0) {
+            logger.warn("Repaired counters on {} posts (likes) and {} posts (comments)", repairedLikes, repairedComments);
+        }
+    }
+}
@@ -1,17 +1,27 @@
 package com.sapp.social.service;
 
+import com.sapp.social.dto.StoredFile;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -22,6 +32,9 @@ public class FileStorageService {
     @Value("${file.upload-dir}")
     private String uploadDir;
 
+    @Value("${spring.servlet.multipart.location:}")
+    private String spoolDir;
+
     @Value("${file.allowed-image-types}")
     private String allowedImageTypes;
 
@@ -31,51 +44,119 @@ public class FileStorageService {
     @Value("${file.max-video-duration-seconds}")
     private int maxVideoDurationSeconds;
 
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private Path uploadPath;
+
+    @PostConstruct
+    void init() throws IOException {
+        uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Files.createDirectories(uploadPath);
+        // The container does not create its spool directory and rejects uploads without it
+        if (StringUtils.hasText(spoolDir)) {
+            Files.createDirectories(Paths.get(spoolDir));
+        }
+    }
+
     public String storeFile(MultipartFile file) throws IOException {
-        try {
-            // Check if file is empty
-            if (file == null) {
-                throw new IOException("File is null");
-            }
+        return store(file).getFileName();
+    }
 
-            if (file.isEmpty()) {
-                throw new IOException("Failed to store empty file");
-            }
+    /**
+     * Stores an upload under a generated name. A part the container has spooled to disk is moved
+     * into place through {@link MultipartFile#transferTo(java.io.File)}, which renames it when the
+     * temp and upload directories share a filesystem, so its bytes are written once. (The
+     * {@code Path} overload always copies through streams.) The SHA-256 is
+     * then computed in one sequential read of the stored file, straight from the page cache.
+     * @param file The uploaded part
+     * @return The stored file's name, size and digest
+     * @throws IOException if the file is empty, of a disallowed type, or cannot be stored
+     */
+    public StoredFile store(MultipartFile file) throws IOException {
+        if (file == null) {
+            throw new IOException("File is null");
+        }
+        if (file.isEmpty()) {
+            throw new IOException("Failed to store empty file");
+        }
 
-            // Log file details
-            System.out.println("Processing file: " + file.getOriginalFilename() +
-                    ", size: " + file.getSize() +
-                    ", content type: " + file.getContentType());
+        String fileType = file.getContentType();
+        if (!isAllowedFileType(fileType)) {
+            throw new IOException("File type not allowed: " + fileType);
+        }
 
-            // Check file type
-            String fileType = file.getContentType();
-            if (!isAllowedFileType(fileType)) {
-                throw new IOException("File type not allowed: " + fileType);
-            }
+        // Generate unique filename
+        String originalFilename = StringUtils.cleanPath(file.getOriginalFilename() != null ? file.getOriginalFilename() : "");
+        String extension = getFileExtension(originalFilename);
+        String newFilename = UUID.randomUUID().toString() +
+                (extension.isEmpty() ? "" : "." + extension);
 
-            // Generate unique filename
-            String originalFilename = StringUtils.cleanPath(file.getOriginalFilename());
-            String extension = getFileExtension(originalFilename);
-            String newFilename = UUID.randomUUID().toString() +
-                    (extension.isEmpty() ? "" : "." + extension);
-
-            // Create upload directory if it doesn't exist
-            Path uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
-            System.out.println("Upload path: " + uploadPath);
-            Files.createDirectories(uploadPath);
-
-            // Save the file
-            Path targetLocation = uploadPath.resolve(newFilename);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-            System.out.println("File saved successfully to: " + targetLocation);
-
-            return newFilename;
-        } catch (Exception e) {
-            e.printStackTrace();
+        Path targetLocation = uploadPath.resolve(newFilename);
+        try {
+            file.transferTo(targetLocation.toFile());
+            return new StoredFile(newFilename, Files.size(targetLocation), sha256(targetLocation));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(targetLocation);
             throw new IOException("Failed to store file: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * @param fileName A name returned by {@link #store}
+     * @return The file's location under the upload directory
+     * @throws IllegalArgumentException if the name would resolve outside the upload directory
+     *         or to a hidden entry in it
+     */
+    public Path resolve(String fileName) {
+        Path path = uploadPath.resolve(fileName).normalize();
+        // Stored names never start with a dot; the multipart spool directory does
+        if (!path.getParent().equals(uploadPath) || path.getFileName().toString().startsWith(".")) {
+            throw new IllegalArgumentException("Invalid file name: " + fileName);
+        }
+        return path;
+    }
+
+    /**
+     * @return the hex SHA-256 of a file's contents
+     */
+    public static String sha256(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Picks the type to serve a stored file as. Content-addressed names end in the MIME subtype;
+     * older names carry the client's extension. Anything that does not map to an allowed upload
+     * type is served as an octet stream, so a stored file can never be rendered as a page.
+     * @param fileName A name returned by {@link #store} or {@link MediaStore#store}
+     * @return The media type for the response
+     */
+    public MediaType getMediaType(String fileName) {
+        String extension = getFileExtension(fileName).toLowerCase(Locale.ROOT);
+        List<String> allowedTypes = getAllowedFileTypes();
+        for (String type : allowedTypes) {
+            if (type.substring(type.indexOf('/') + 1).replaceAll("[^a-z0-9]", "").equals(extension)) {
+                return MediaType.parseMediaType(type);
+            }
+        }
+        return MediaTypeFactory.getMediaType(fileName)
+                .filter(type -> allowedTypes.contains(type.toString()))
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
     public boolean isAllowedFileType(String contentType) {
         List<String> allowedTypes = getAllowedFileTypes();
         return allowedTypes.contains(contentType);
@@ -0,0 +1,190 @@
+package com.sapp.social.service;
+
+import com.sapp.social.event.PostDeletedEvent;
+import com.sapp.social.repository.LikePair;
+import com.sapp.social.repository.LikeRepository;
+import com.sapp.social.repository.PostRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-post compressed bitmaps of the users who liked it, so "has this user liked these posts"
+ * is answered from memory. Bitmaps are loaded lazily, all missing posts of a request in one
+ * query, and the least recently used ones are evicted beyond {@code app.likes.bitmap.max-posts}.
+ *
+ * Loaded bitmaps are updated once a toggle is durable: after commit, or after the write-behind
+ * flush has written it. A toggle that lands while a post is being loaded marks it dirty and
+ * the loaded bitmap is discarded instead of cached. Ids with no likes that turn out not to be
+ * posts are answered but not cached, so arbitrary ids cannot push real posts out of the LRU.
+ */
+@Component
+public class LikeBitmapIndex {
+
+    @Autowired
+    private LikeRepository likeRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.likes.bitmap.max-posts:10000}")
+    private int maxPosts;
+
+    private Map<Long, Roaring64Bitmap> bitmaps;
+
+    // Posts currently being loaded by one or more requests
+    private final Map<Long, LoadState> loading = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        bitmaps = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Roaring64Bitmap> eldest) {
+                return size() > maxPosts;
+            }
+        };
+
+        Gauge.builder("likes.bitmap.posts", this, LikeBitmapIndex::cachedPosts)
+                .description("Posts whose liker bitmap is held in memory")
+                .register(meterRegistry);
+        Gauge.builder("likes.bitmap.memory.bytes", this, LikeBitmapIndex::memoryBytes)
+                .description("Serialized size of the in-memory liker bitmaps")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Answers whether a user has liked each of the given posts
+     * @param userId The user
+     * @param postIds The posts to check
+     * @return A map with an entry for every requested post id
+     */
+    public Map<Long, Boolean> hasLiked(Long userId, Collection<Long> postIds) {
+        Map<Long, Boolean> result = new HashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+
+        synchronized (this) {
+            for (Long postId : postIds) {
+                Roaring64Bitmap bitmap = bitmaps.get(postId);
+                if (bitmap != null) {
+                    result.put(postId, bitmap.contains(userId));
+                } else if (missing.add(postId)) {
+                    loading.computeIfAbsent(postId, id -> new LoadState()).loaders++;
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        Map<Long, Roaring64Bitmap> loaded = new HashMap<>();
+        for (Long postId : missing) {
+            loaded.put(postId, new Roaring64Bitmap());
+        }
+        Set<Long> nonexistent = new HashSet<>();
+        try {
+            for (LikePair pair : likeRepository.findLikePairsByPostIds(missing)) {
+                loaded.get(pair.getPostId()).addLong(pair.getUserId());
+            }
+            // Only posts without likes can be ids that match no post
+            loaded.forEach((postId, bitmap) -> {
+                if (bitmap.isEmpty()) {
+                    nonexistent.add(postId);
+                }
+            });
+            if (!nonexistent.isEmpty()) {
+                postRepository.findExistingPostIds(nonexistent).forEach(nonexistent::remove);
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                missing.forEach(this::finishLoading);
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            for (Map.Entry<Long, Roaring64Bitmap> entry : loaded.entrySet()) {
+                Long postId = entry.getKey();
+                Roaring64Bitmap bitmap = entry.getValue();
+                bitmap.runOptimize();
+
+                if (!loading.get(postId).dirty && !nonexistent.contains(postId)) {
+                    bitmaps.putIfAbsent(postId, bitmap);
+                }
+                finishLoading(postId);
+                Roaring64Bitmap current = bitmaps.getOrDefault(postId, bitmap);
+                result.put(postId, current.contains(userId));
+            }
+        }
+        return result;
+    }
+
+    public boolean hasLiked(Long userId, Long postId) {
+        return hasLiked(userId, Set.of(postId)).get(postId);
+    }
+
+    /**
+     * Applies a toggle to the post's bitmap if it is loaded. Unloaded posts pick the change
+     * up from the database when they are next read.
+     */
+    public synchronized void recordToggle(Long userId, Long postId, boolean liked) {
+        LoadState state = loading.get(postId);
+        if (state != null) {
+            state.dirty = true;
+        }
+        Roaring64Bitmap bitmap = bitmaps.get(postId);
+        if (bitmap == null) {
+            return;
+        }
+        if (liked) {
+            bitmap.addLong(userId);
+        } else {
+            bitmap.removeLong(userId);
+        }
+    }
+
+    private void finishLoading(Long postId) {
+        LoadState state = loading.get(postId);
+        if (--state.loaders == 0) {
+            loading.remove(postId);
+        }
+    }
+
+    @EventListener
+    public synchronized void onPostDeleted(PostDeletedEvent event) {
+        bitmaps.remove(event.getPostId());
+    }
+
+    private synchronized int cachedPosts() {
+        return bitmaps.size();
+    }
+
+    private synchronized long memoryBytes() {
+        long bytes = 0;
+        for (Roaring64Bitmap bitmap : bitmaps.values()) {
+            bytes += bitmap.getLongSizeInBytes();
+        }
+        return bytes;
+    }
+
+    private static class LoadState {
+        private int loaders;
+        private boolean dirty; // a toggle arrived while loading, so the loaded bitmap may be stale
+    }
+}
@@ -1,18 +1,25 @@
 package com.sapp.social.service;
 
-import com.linkup.app.model.Like;
-import com.linkup.app.model.Post;
-import com.linkup.app.model.User;
-import com.linkup.app.repository.LikeRepository;
-import com.linkup.app.repository.PostRepository;
-import com.linkup.app.repository.UserRepository;
+import com.sapp.social.dto.LikeResponse;
+import com.sapp.social.model.Like;
+import com.sapp.social.model.Post;
+import com.sapp.social.model.User;
+import com.sapp.social.repository.LikeRepository;
+import com.sapp.social.repository.PostRepository;
+import com.sapp.social.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 public class LikeService {
@@ -26,8 +33,29 @@ public class LikeService {
     @Autowired
     private PostRepository postRepository;
 
+    @Autowired
+    private LikeWriteBuffer likeWriteBuffer;
+
+    @Autowired
+    private LikeBitmapIndex likeBitmapIndex;
+
+    @Value("${app.likes.write-behind.enabled:false}")
+    private boolean writeBehindEnabled;
+
+    /**
+     * Likes the post if the user has not liked it yet, otherwise removes the like
+     * @return true if the post is liked after the toggle
+     */
     @Transactional
-    public Like toggleLike(Long userId, Long postId) {
+    public boolean toggleLike(Long userId, Long postId) {
+        if (writeBehindEnabled) {
+            if (!postRepository.existsById(postId)) {
+                throw new RuntimeException("Post not found");
+            }
+            // The bitmap holds the stored state and only changes once the flush has written the toggle
+            return likeWriteBuffer.toggle(userId, postId, () -> likeBitmapIndex.hasLiked(userId, postId));
+        }
+
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
@@ -39,26 +67,64 @@ public class LikeService {
         if (existingLike.isPresent()) {
             // Unlike - remove the like
             likeRepository.delete(existingLike.get());
-            return null;
+            postRepository.adjustLikeCount(postId, -1);
+            recordToggleAfterCommit(userId, postId, false);
+            return false;
         } else {
             // Like - create new like
             Like like = new Like();
             like.setUser(user);
             like.setPost(post);
             like.setCreatedAt(LocalDateTime.now());
-            return likeRepository.save(like);
+            likeRepository.save(like);
+            postRepository.adjustLikeCount(postId, 1);
+            recordToggleAfterCommit(userId, postId, true);
+            return true;
         }
     }
 
+    private void recordToggleAfterCommit(Long userId, Long postId, boolean liked) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                likeBitmapIndex.recordToggle(userId, postId, liked);
+            }
+        });
+    }
+
     public boolean hasUserLiked(Long userId, Long postId) {
-        return likeRepository.existsByUserUserIdAndPostPostId(userId, postId);
+        Boolean pending = likeWriteBuffer.pendingState(userId, postId);
+        if (pending != null) {
+            return pending;
+        }
+        return likeBitmapIndex.hasLiked(userId, postId);
     }
 
-    public int getLikesCount(Long postId) {
-        return likeRepository.countByPostPostId(postId);
+    /**
+     * Answers whether a user has liked each of the given posts, from memory where possible
+     * @return A map with an entry for every requested post id
+     */
+    public Map<Long, Boolean> getLikeStatuses(Long userId, Collection<Long> postIds) {
+        Map<Long, Boolean> statuses = likeBitmapIndex.hasLiked(userId, postIds);
+        statuses.replaceAll((postId, liked) -> {
+            Boolean pending = likeWriteBuffer.pendingState(userId, postId);
+            return pending != null ? pending : liked;
+        });
+        return statuses;
     }
 
-    public List<Like> getPostLikes(Long postId) {
-        return likeRepository.findByPostPostId(postId);
-    }
+    public long getLikesCount(Long postId) {
+        return postRepository.findLikeCountByPostId(postId).orElse(0L) + likeWriteBuffer.pendingDelta(postId);
+    }
+
+    public List<LikeResponse> getPostLikes(Long postId) {
+        return likeRepository.findByPostPostId(postId).stream()
+                .map(like -> new LikeResponse(
+                        like.getLikeId(),
+                        like.getUser().getUserId(),
+                        like.getUser().getUserName(),
+                        postId,
+                        like.getCreatedAt()))
+                .collect(Collectors.toList());
+    }
 }
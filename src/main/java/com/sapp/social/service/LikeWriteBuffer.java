@@ -0,0 +1,310 @@
+package com.sapp.social.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Write-behind buffer for like toggles. Toggles are recorded in memory per (user, post) and
+ * a like followed by an unlike cancels out before it ever reaches the database. The buffer
+ * is flushed on a fixed delay as one batch insert, one batch delete and one batch of counter
+ * updates, and drained on shutdown.
+ *
+ * Reads must consult {@link #pendingState} and {@link #pendingDelta} so users see their
+ * own writes before they are flushed.
+ *
+ * Flushes never overlap. A row the database rejects (e.g. its post was deleted) is dropped;
+ * if the batch cannot be written at all, for instance without a connection, it is put back
+ * in front of the toggles buffered since and retried on the next flush.
+ */
+@Component
+public class LikeWriteBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LikeWriteBuffer.class);
+
+    private static final int STRIPES = 64;
+
+    // Only inserts if the row is missing, so a replayed flush cannot duplicate a like
+    private static final String INSERT_SQL =
+            "INSERT INTO likes (created_at, user_id, post_id) SELECT ?, ?, ? FROM DUAL " +
+            "WHERE NOT EXISTS (SELECT 1 FROM likes WHERE user_id = ? AND post_id = ?)";
+    private static final String DELETE_SQL = "DELETE FROM likes WHERE user_id = ? AND post_id = ?";
+    private static final String ADJUST_COUNT_SQL = "UPDATE posts SET like_count = like_count + ? WHERE post_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private LikeBitmapIndex likeBitmapIndex;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    // The scheduled flush and the shutdown drain must not swap inflight maps under each other
+    private final Object flushLock = new Object();
+
+    // Sum of pending +1/-1 changes per post, overlaid on the stored counter by readers
+    private final Map<Long, Long> pendingDeltas = new ConcurrentHashMap<>();
+
+    public LikeWriteBuffer() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Records a toggle
+     * @param userId The user toggling the like
+     * @param postId The post being liked or unliked
+     * @param storedState Looks up whether the like exists in the database; only called
+     *                    when nothing is buffered for this pair
+     * @return true if the post is liked after the toggle
+     */
+    public boolean toggle(Long userId, Long postId, BooleanSupplier storedState) {
+        LikeKey key = new LikeKey(userId, postId);
+        Stripe stripe = stripeFor(key);
+
+        // Resolve the stored state outside the lock; it is only used if the pair is still unbuffered
+        Boolean known = stripe.currentState(key);
+        boolean stored = known != null ? known : storedState.getAsBoolean();
+
+        synchronized (stripe) {
+            Pending pending = stripe.pending.get(key);
+            Pending inflight = stripe.inflight.get(key);
+            boolean before = pending != null ? pending.liked : inflight != null ? inflight.liked : stored;
+            boolean base = pending != null ? pending.base : inflight != null ? inflight.liked : stored;
+            boolean after = !before;
+
+            if (after == base) {
+                stripe.pending.remove(key);
+            } else {
+                stripe.pending.put(key, new Pending(after, base, LocalDateTime.now()));
+            }
+            addDelta(postId, after ? 1 : -1);
+            return after;
+        }
+    }
+
+    /**
+     * @return the buffered like state for the pair, or null if the database is authoritative
+     */
+    public Boolean pendingState(Long userId, Long postId) {
+        LikeKey key = new LikeKey(userId, postId);
+        return stripeFor(key).currentState(key);
+    }
+
+    /**
+     * @return the net number of buffered likes minus unlikes for a post
+     */
+    public long pendingDelta(Long postId) {
+        return pendingDeltas.getOrDefault(postId, 0L);
+    }
+
+    @Scheduled(fixedDelayString = "${app.likes.write-behind.flush-interval-ms:200}")
+    public void flush() {
+        synchronized (flushLock) {
+            Map<LikeKey, Pending> batch = new HashMap<>();
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    if (stripe.pending.isEmpty()) {
+                        continue;
+                    }
+                    // Swapped entries stay visible to readers until they are committed
+                    stripe.inflight = stripe.pending;
+                    stripe.pending = new HashMap<>();
+                    batch.putAll(stripe.inflight);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            Set<LikeKey> dropped;
+            try {
+                dropped = write(batch);
+            } catch (RuntimeException e) {
+                logger.warn("Like flush failed, keeping {} buffered changes for the next flush", batch.size(), e);
+                requeue();
+                return;
+            }
+
+            // The written changes are durable now; dropped ones never reached the database
+            batch.forEach((key, pending) -> {
+                if (!dropped.contains(key)) {
+                    likeBitmapIndex.recordToggle(key.userId(), key.postId(), pending.liked);
+                }
+            });
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    stripe.inflight = Map.of();
+                }
+            }
+            for (Map.Entry<LikeKey, Pending> entry : batch.entrySet()) {
+                addDelta(entry.getKey().postId(), entry.getValue().liked ? -1 : 1);
+            }
+        }
+    }
+
+    // Puts an unwritten batch back. A toggle buffered since took the inflight state as its
+    // base, but the database is still at the inflight entry's base, so that base carries over.
+    private void requeue() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Map.Entry<LikeKey, Pending> entry : stripe.inflight.entrySet()) {
+                    Pending unwritten = entry.getValue();
+                    Pending newer = stripe.pending.get(entry.getKey());
+                    if (newer == null) {
+                        stripe.pending.put(entry.getKey(), unwritten);
+                    } else if (newer.liked == unwritten.base) {
+                        stripe.pending.remove(entry.getKey());
+                    } else {
+                        stripe.pending.put(entry.getKey(), new Pending(newer.liked, unwritten.base, newer.at));
+                    }
+                }
+                stripe.inflight = Map.of();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+        flush();
+    }
+
+    /**
+     * @return the changes the database rejected and that were dropped
+     */
+    private Set<LikeKey> write(Map<LikeKey, Pending> batch) {
+        Set<LikeKey> dropped = new HashSet<>();
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        for (Map.Entry<LikeKey, Pending> entry : batch.entrySet()) {
+            LikeKey key = entry.getKey();
+            Pending pending = entry.getValue();
+            if (pending.liked) {
+                inserts.add(new Object[]{Timestamp.valueOf(pending.at), key.userId(), key.postId(), key.userId(), key.postId()});
+            } else {
+                deletes.add(new Object[]{key.userId(), key.postId()});
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Long, Long> deltas = new HashMap<>();
+                collectDeltas(jdbcTemplate.batchUpdate(INSERT_SQL, inserts), inserts, 2, 1, deltas);
+                collectDeltas(jdbcTemplate.batchUpdate(DELETE_SQL, deletes), deletes, 1, -1, deltas);
+                adjustCounts(deltas);
+            });
+        } catch (DataAccessException e) {
+            // One bad row (e.g. a post deleted meanwhile) fails the whole batch; retry row by row.
+            // Rows are idempotent, so a failure here that requeues the batch can replay them safely.
+            logger.warn("Batched like flush failed, retrying {} rows individually", batch.size(), e);
+            writeIndividually(inserts, INSERT_SQL, 2, 1, dropped);
+            writeIndividually(deletes, DELETE_SQL, 1, -1, dropped);
+        }
+        logger.debug("Flushed {} like inserts and {} deletes", inserts.size(), deletes.size());
+        return dropped;
+    }
+
+    private void writeIndividually(List<Object[]> rows, String sql, int postIdIndex, int sign, Set<LikeKey> dropped) {
+        for (Object[] row : rows) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (jdbcTemplate.update(sql, row) > 0) {
+                        adjustCounts(Map.of((Long) row[postIdIndex], (long) sign));
+                    }
+                });
+            } catch (DataIntegrityViolationException e) {
+                logger.error("Dropping buffered like change for user {} on post {}", row[postIdIndex - 1], row[postIdIndex], e);
+                dropped.add(new LikeKey((Long) row[postIdIndex - 1], (Long) row[postIdIndex]));
+            }
+        }
+    }
+
+    // Counters move by rows actually changed, so a like that already existed is not counted twice
+    private void collectDeltas(int[] updated, List<Object[]> rows, int postIdIndex, int sign, Map<Long, Long> deltas) {
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] != 0) {
+                deltas.merge((Long) rows.get(i)[postIdIndex], (long) sign, Long::sum);
+            }
+        }
+    }
+
+    private void adjustCounts(Map<Long, Long> deltas) {
+        List<Object[]> updates = new ArrayList<>();
+        deltas.forEach((postId, delta) -> {
+            if (delta != 0) {
+                updates.add(new Object[]{delta, postId});
+            }
+        });
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(ADJUST_COUNT_SQL, updates);
+        }
+    }
+
+    private void addDelta(Long postId, long change) {
+        // A merge result of null drops the entry once the pending changes cancel out
+        pendingDeltas.merge(postId, change, (current, added) -> current + added == 0 ? null : current + added);
+    }
+
+    private Stripe stripeFor(LikeKey key) {
+        return stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    private record LikeKey(Long userId, Long postId) {
+    }
+
+    private static class Pending {
+        private final boolean liked; // state the database should end up in
+        private final boolean base;  // state the database was in when buffering started
+        private final LocalDateTime at;
+
+        Pending(boolean liked, boolean base, LocalDateTime at) {
+            this.liked = liked;
+            this.base = base;
+            this.at = at;
+        }
+    }
+
+    private static class Stripe {
+        private Map<LikeKey, Pending> pending = new HashMap<>();
+        private Map<LikeKey, Pending> inflight = Map.of();
+
+        synchronized Boolean currentState(LikeKey key) {
+            Pending entry = pending.get(key);
+            if (entry == null) {
+                entry = inflight.get(key);
+            }
+            return entry == null ? null : entry.liked;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.sapp.social.service;
+
+import com.sapp.social.dto.StoredFile;
+import com.sapp.social.repository.ContentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed media storage on top of {@link FileStorageService}. Each upload is stored
+ * as {@code <name>.<subtype>}, where the name is an HMAC-SHA256 of the upload's digest keyed with
+ * {@code app.media.name-secret}, so identical bytes posted again resolve to the file that is
+ * already there and the new post only inserts its Content row. Media is served without a token,
+ * and the key keeps anyone who holds a file from computing its name and probing for it; the
+ * plain digest stays in the Content row. Without a dedicated secret the key is derived from the
+ * JWT secret with HKDF under its own label, so the signing key itself never names a file.
+ * Changing the secret only stops new uploads from sharing files stored before. The rows are the reference counts: a file is deleted once no
+ * Content row has its path any more.
+ * <p>
+ * A file that an uncommitted upload has just reused or placed is pinned until that transaction
+ * completes, so a concurrent release of the same file cannot delete it. Pins live in memory,
+ * which assumes one instance owns the upload directory. A crash between the commit and the
+ * cleanup leaves an unreferenced file behind, never a row without its file.
+ * With {@code file.content-addressed=false} uploads keep their random names and are never shared.
+ */
+@Service
+public class MediaStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaStore.class);
+
+    private static final int LOCK_STRIPES = 64;
+    private static final String NAME_MAC = "HmacSHA256";
+    private static final String NAME_KEY_LABEL = "media-name";
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${file.content-addressed:true}")
+    private boolean contentAddressed;
+
+    @Value("${app.media.name-secret:}")
+    private String nameSecret;
+
+    @Value("${app.jwt.secret}")
+    private String jwtSecret;
+
+    private SecretKeySpec nameKey;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    // Files in use by transactions that have not completed yet, with the number of users
+    private final Map<String, Integer> pinned = new ConcurrentHashMap<>();
+
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    private Counter storedUploads;
+    private Counter duplicateUploads;
+    private Counter bytesSaved;
+    private Counter filesDeleted;
+
+    @PostConstruct
+    void init() {
+        byte[] keyBytes = nameSecret.isEmpty()
+                ? deriveKey(jwtSecret.getBytes(StandardCharsets.UTF_8), NAME_KEY_LABEL)
+                : nameSecret.getBytes(StandardCharsets.UTF_8);
+        nameKey = new SecretKeySpec(keyBytes, NAME_MAC);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        storedUploads = Counter.builder("media.uploads")
+                .tag("result", "stored")
+                .description("Uploads stored as a new file")
+                .register(meterRegistry);
+        duplicateUploads = Counter.builder("media.uploads")
+                .tag("result", "duplicate")
+                .description("Uploads that reused a file already stored")
+                .register(meterRegistry);
+        bytesSaved = Counter.builder("media.dedup.bytes.saved")
+                .baseUnit("bytes")
+                .description("Bytes not kept on disk because an identical file existed")
+                .register(meterRegistry);
+        Gauge.builder("media.dedup.ratio", this, MediaStore::dedupRatio)
+                .description("Share of uploaded bytes since startup that were deduplicated")
+                .register(meterRegistry);
+        filesDeleted = Counter.builder("media.files.deleted")
+                .description("Stored files removed after their last reference went")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stores an upload, reusing the existing file when identical bytes are already stored.
+     * Call inside the transaction that inserts the Content row referencing the result.
+     * @param file The uploaded part
+     * @return The name to record as the Content path, with the upload's size and plain digest
+     * @throws IOException if the file is rejected or cannot be stored
+     */
+    public StoredFile store(MultipartFile file) throws IOException {
+        StoredFile stored = fileStorageService.store(file);
+        if (!contentAddressed) {
+            return stored;
+        }
+
+        Path upload = fileStorageService.resolve(stored.getFileName());
+        String name = storedName(stored.getSha256()) + extension(file.getContentType());
+        Path target = fileStorageService.resolve(name);
+        boolean duplicate;
+        try {
+            synchronized (lockFor(name)) {
+                pinned.merge(name, 1, Integer::sum);
+                duplicate = Files.exists(target);
+                if (duplicate) {
+                    Files.delete(upload);
+                } else {
+                    move(upload, target);
+                }
+            }
+        } catch (IOException e) {
+            unpin(name);
+            Files.deleteIfExists(upload);
+            throw e;
+        }
+        unpinOnCompletion(name);
+
+        uploadedBytes.addAndGet(stored.getSize());
+        if (duplicate) {
+            duplicateUploads.increment();
+            bytesSaved.increment(stored.getSize());
+            savedBytes.addAndGet(stored.getSize());
+        } else {
+            storedUploads.increment();
+        }
+        return new StoredFile(name, stored.getSize(), stored.getSha256());
+    }
+
+    /**
+     * Deletes stored files that no Content row references any more. Call from the transaction
+     * that deletes the rows; the check runs once it has committed.
+     * @param paths The paths of the deleted Content rows
+     */
+    public void release(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    paths.stream().distinct().forEach(MediaStore.this::deleteIfUnreferenced);
+                }
+            });
+        } else {
+            paths.stream().distinct().forEach(this::deleteIfUnreferenced);
+        }
+    }
+
+    private void unpinOnCompletion(String name) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            unpin(name);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                unpin(name);
+                // A rolled-back upload may have placed a file nothing refers to
+                if (status != STATUS_COMMITTED) {
+                    deleteIfUnreferenced(name);
+                }
+            }
+        });
+    }
+
+    private void unpin(String name) {
+        pinned.computeIfPresent(name, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private void deleteIfUnreferenced(String name) {
+        if (name == null) {
+            return;
+        }
+        synchronized (lockFor(name)) {
+            try {
+                if (pinned.containsKey(name) || contentRepository.countByPath(name) > 0) {
+                    return;
+                }
+                if (Files.deleteIfExists(fileStorageService.resolve(name))) {
+                    filesDeleted.increment();
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not remove stored file {}", name, e);
+            }
+        }
+    }
+
+    private String storedName(String sha256) {
+        try {
+            Mac mac = Mac.getInstance(NAME_MAC);
+            mac.init(nameKey);
+            return HexFormat.of().formatHex(mac.doFinal(sha256.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is unavailable", e);
+        }
+    }
+
+    /**
+     * HKDF-SHA256 (RFC 5869) with an all-zero salt, expanded to a single 32-byte block
+     */
+    private static byte[] deriveKey(byte[] inputKey, String label) {
+        try {
+            Mac mac = Mac.getInstance(NAME_MAC);
+            mac.init(new SecretKeySpec(new byte[mac.getMacLength()], NAME_MAC));
+            byte[] pseudoRandomKey = mac.doFinal(inputKey);
+
+            mac.init(new SecretKeySpec(pseudoRandomKey, NAME_MAC));
+            mac.update(label.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 1);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is unavailable", e);
+        }
+    }
+
+    private Object lockFor(String name) {
+        return locks[Math.floorMod(name.hashCode(), LOCK_STRIPES)];
+    }
+
+    private double dedupRatio() {
+        long uploaded = uploadedBytes.get();
+        return uploaded == 0 ? 0 : (double) savedBytes.get() / uploaded;
+    }
+
+    // Files with identical bytes share a name only if they share a type, so the extension
+    // comes from the declared MIME type rather than the client's file name
+    private static String extension(String contentType) {
+        if (contentType == null) {
+            return "";
+        }
+        String subtype = contentType.substring(contentType.indexOf('/') + 1).toLowerCase(Locale.ROOT)
+                .replaceAll("[^a-z0-9]", "");
+        return subtype.isEmpty() ? "" : "." + subtype;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
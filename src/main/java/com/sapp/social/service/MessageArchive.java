@@ -0,0 +1,367 @@
+package com.sapp.social.service;
+
+import com.sapp.social.model.Message;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Cold storage for old chat messages, one append-only segment file per conversation. Messages
+ * are packed in id order into blocks of up to {@code app.archive.block-messages}, and each
+ * block is Deflate-compressed on its own. A small index file beside the segment keeps one entry
+ * per block (id range, offset, sizes), so a read binary-searches the index and reads and
+ * inflates only the blocks it needs.
+ * <p>
+ * The segment is forced to disk before its index entries are written. A crash between the two
+ * leaves unreferenced bytes at the end of the segment, which the next append writes past, and a
+ * torn index entry is ignored on load and cut off on the next append.
+ */
+@Component
+public class MessageArchive {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int INDEX_ENTRY_BYTES = 3 * Long.BYTES + 3 * Integer.BYTES;
+    private static final int MAX_CACHED_INDEXES = 1000;
+
+    private static final Message.MessageStatus[] STATUSES = Message.MessageStatus.values();
+
+    @Value("${app.archive.data-dir:./data/archive}")
+    private String dataDir;
+
+    @Value("${app.archive.block-messages:128}")
+    private int blockMessages;
+
+    private Path directory;
+
+    // Block index per conversation, least recently read evicted first
+    private Map<String, List<Block>> indexes;
+
+    @PostConstruct
+    void init() throws IOException {
+        directory = Paths.get(dataDir).toAbsolutePath().normalize();
+        Files.createDirectories(directory);
+        indexes = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Block>> eldest) {
+                return size() > MAX_CACHED_INDEXES;
+            }
+        });
+    }
+
+    /**
+     * Reads archived messages of a conversation, newest first
+     * @param beforeMessageId Only messages with a lower id, or null to start at the newest
+     * @param limit Maximum number of messages to return
+     */
+    public List<ArchivedMessage> readBefore(long lowUserId, long highUserId, Long beforeMessageId, int limit) {
+        List<Block> blocks = index(lowUserId, highUserId);
+        List<ArchivedMessage> result = new ArrayList<>();
+        if (blocks.isEmpty() || limit <= 0) {
+            return result;
+        }
+
+        long before = beforeMessageId != null ? beforeMessageId : Long.MAX_VALUE;
+        int last = lastBlockStartingBefore(blocks, before);
+        if (last < 0) {
+            return result;
+        }
+        try (FileChannel channel = FileChannel.open(segmentPath(lowUserId, highUserId), StandardOpenOption.READ)) {
+            for (int i = last; i >= 0 && result.size() < limit; i--) {
+                List<ArchivedMessage> messages = decode(channel, blocks.get(i));
+                for (int j = messages.size() - 1; j >= 0 && result.size() < limit; j--) {
+                    if (messages.get(j).messageId() < before) {
+                        result.add(messages.get(j));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a conversation's whole archive, oldest first
+     */
+    public List<ArchivedMessage> readAll(long lowUserId, long highUserId) {
+        List<ArchivedMessage> newestFirst = readBefore(lowUserId, highUserId, null, Integer.MAX_VALUE);
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    /**
+     * Looks up specific archived messages of a conversation, decoding only the blocks whose
+     * id range can hold them
+     */
+    public List<ArchivedMessage> findByIds(long lowUserId, long highUserId, Collection<Long> messageIds) {
+        List<Block> blocks = index(lowUserId, highUserId);
+        List<ArchivedMessage> result = new ArrayList<>();
+        if (blocks.isEmpty() || messageIds.isEmpty()) {
+            return result;
+        }
+        try (FileChannel channel = FileChannel.open(segmentPath(lowUserId, highUserId), StandardOpenOption.READ)) {
+            for (Block block : blocks) {
+                boolean wanted = messageIds.stream()
+                        .anyMatch(id -> id >= block.firstMessageId() && id <= block.lastMessageId());
+                if (!wanted) {
+                    continue;
+                }
+                for (ArchivedMessage message : decode(channel, block)) {
+                    if (messageIds.contains(message.messageId())) {
+                        result.add(message);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    /**
+     * @return the highest archived message id of the conversation, or 0 if nothing is archived
+     */
+    public long archivedMaxId(long lowUserId, long highUserId) {
+        List<Block> blocks = index(lowUserId, highUserId);
+        return blocks.isEmpty() ? 0 : blocks.get(blocks.size() - 1).lastMessageId();
+    }
+
+    /**
+     * Appends messages to a conversation's segment. Only the archive job writes, one
+     * conversation at a time.
+     * @param messages Messages in ascending id order, all newer than {@link #archivedMaxId}
+     */
+    public void append(long lowUserId, long highUserId, List<ArchivedMessage> messages) throws IOException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        List<Block> blocks = new ArrayList<>(index(lowUserId, highUserId));
+        long indexLength = (long) blocks.size() * INDEX_ENTRY_BYTES;
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream indexOut = new DataOutputStream(indexBytes);
+
+        try (FileChannel segment = FileChannel.open(segmentPath(lowUserId, highUserId),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long offset = segment.size();
+            for (int from = 0; from < messages.size(); from += blockMessages) {
+                List<ArchivedMessage> chunk = messages.subList(from, Math.min(from + blockMessages, messages.size()));
+                byte[] raw = encode(chunk);
+                byte[] compressed = deflate(raw);
+                segment.write(ByteBuffer.wrap(compressed), offset);
+
+                Block block = new Block(chunk.get(0).messageId(), chunk.get(chunk.size() - 1).messageId(),
+                        offset, compressed.length, raw.length, chunk.size());
+                block.writeTo(indexOut);
+                blocks.add(block);
+                offset += compressed.length;
+            }
+            segment.force(true);
+        }
+
+        try (FileChannel index = FileChannel.open(indexPath(lowUserId, highUserId),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Drops a torn entry left by an earlier crash before writing the new ones
+            index.truncate(indexLength);
+            index.write(ByteBuffer.wrap(indexBytes.toByteArray()), indexLength);
+            index.force(true);
+        }
+        indexes.put(key(lowUserId, highUserId), List.copyOf(blocks));
+    }
+
+    /**
+     * Removes every archived conversation the user took part in
+     */
+    public void deleteConversationsOf(long userId) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "c*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String[] ids = name.substring(1, name.lastIndexOf('.')).split("_");
+                if (ids.length == 2 && (ids[0].equals(Long.toString(userId)) || ids[1].equals(Long.toString(userId)))) {
+                    indexes.remove(name.substring(0, name.lastIndexOf('.')));
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private List<Block> index(long lowUserId, long highUserId) {
+        String key = key(lowUserId, highUserId);
+        List<Block> cached = indexes.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Path path = indexPath(lowUserId, highUserId);
+        if (!Files.exists(path)) {
+            return List.of();
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            List<Block> blocks = new ArrayList<>(bytes.length / INDEX_ENTRY_BYTES);
+            // A torn trailing entry from a crash mid-write is ignored
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+                for (int i = 0; i < bytes.length / INDEX_ENTRY_BYTES; i++) {
+                    blocks.add(Block.readFrom(in));
+                }
+            }
+            List<Block> loaded = List.copyOf(blocks);
+            indexes.put(key, loaded);
+            return loaded;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int lastBlockStartingBefore(List<Block> blocks, long before) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blocks.get(mid).firstMessageId() < before) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private static byte[] encode(List<ArchivedMessage> messages) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (ArchivedMessage message : messages) {
+                out.writeLong(message.messageId());
+                out.writeLong(message.senderId());
+                out.writeLong(message.receiverId());
+                out.writeLong(message.timestamp().toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(message.timestamp().getNano());
+                out.writeByte(message.status().ordinal());
+                byte[] content = message.content().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(content.length);
+                out.write(content);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<ArchivedMessage> decode(FileChannel segment, Block block) throws IOException {
+        // Blocks are a few KB, so one positional read beats mapping each block and copying it out
+        ByteBuffer compressed = ByteBuffer.allocate(block.compressedLength());
+        while (compressed.hasRemaining()) {
+            if (segment.read(compressed, block.offset() + compressed.position()) < 0) {
+                throw new EOFException("Archive block runs past the end of the segment");
+            }
+        }
+        byte[] raw = inflate(compressed.flip(), block.rawLength());
+
+        ByteBuffer in = ByteBuffer.wrap(raw);
+        List<ArchivedMessage> messages = new ArrayList<>(block.count());
+        for (int i = 0; i < block.count(); i++) {
+            long messageId = in.getLong();
+            long senderId = in.getLong();
+            long receiverId = in.getLong();
+            LocalDateTime timestamp = LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+            Message.MessageStatus status = STATUSES[in.get()];
+            byte[] content = new byte[in.getInt()];
+            in.get(content);
+            messages.add(new ArchivedMessage(messageId, senderId, receiverId,
+                    new String(content, StandardCharsets.UTF_8), timestamp, status));
+        }
+        return messages;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(ByteBuffer compressed, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                read += inflater.inflate(raw, read, rawLength - read);
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt archive block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static String key(long lowUserId, long highUserId) {
+        return "c" + lowUserId + "_" + highUserId;
+    }
+
+    private Path segmentPath(long lowUserId, long highUserId) {
+        return directory.resolve(key(lowUserId, highUserId) + SEGMENT_SUFFIX);
+    }
+
+    private Path indexPath(long lowUserId, long highUserId) {
+        return directory.resolve(key(lowUserId, highUserId) + INDEX_SUFFIX);
+    }
+
+    public record ArchivedMessage(long messageId, long senderId, long receiverId, String content,
+                                  LocalDateTime timestamp, Message.MessageStatus status) {
+    }
+
+    private record Block(long firstMessageId, long lastMessageId, long offset,
+                         int compressedLength, int rawLength, int count) {
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(firstMessageId);
+            out.writeLong(lastMessageId);
+            out.writeLong(offset);
+            out.writeInt(compressedLength);
+            out.writeInt(rawLength);
+            out.writeInt(count);
+        }
+
+        static Block readFrom(DataInputStream in) throws IOException {
+            return new Block(in.readLong(), in.readLong(), in.readLong(), in.readInt(), in.readInt(), in.readInt());
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.sapp.social.service;
+
+import com.sapp.social.model.Message;
+import com.sapp.social.repository.ConversationSummaryRepository;
+import com.sapp.social.service.MessageArchive.ArchivedMessage;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves messages older than {@code app.archive.max-age-days} out of the messages table into
+ * {@link MessageArchive}. Scans the table in id order and stops at the first message that is
+ * still too young, so each conversation's archive is always an id prefix of its history and
+ * readers can switch from the table to the archive at a single message id.
+ * <p>
+ * Each batch is re-read with its rows locked, appended to the segments and deleted from the
+ * table in one transaction, so the archived status and the unread counts reflect any read
+ * receipt that landed after the scan. If the commit is lost, the next run finds the rows
+ * already archived, skips the append and deletes them.
+ */
+@Component
+public class MessageArchiveJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageArchiveJob.class);
+
+    private static final String COLUMNS = "message_id, sender_id, receiver_id, low_user_id, high_user_id, " +
+            "content, timestamp, status";
+    private static final String SELECT_SQL = "SELECT " + COLUMNS + " FROM messages " +
+            "WHERE message_id > ? ORDER BY message_id LIMIT ?";
+    private static final String LOCK_SQL = "SELECT " + COLUMNS + " FROM messages " +
+            "WHERE message_id IN (%s) ORDER BY message_id FOR UPDATE";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ConversationSummaryRepository conversationSummaryRepository;
+
+    @Autowired
+    private MessageArchive messageArchive;
+
+    @Value("${app.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.archive.max-age-days:365}")
+    private int maxAgeDays;
+
+    @Value("${app.archive.batch-size:1000}")
+    private int batchSize;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(initialDelayString = "${app.archive.initial-delay-ms:300000}",
+            fixedDelayString = "${app.archive.interval-ms:3600000}")
+    public void archive() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int archived = archiveOlderThan(LocalDateTime.now().minusDays(maxAgeDays));
+            if (archived > 0) {
+                logger.info("Archived {} messages", archived);
+            }
+        } catch (Exception e) {
+            logger.error("Message archiving stopped", e);
+        }
+    }
+
+    /**
+     * Archives every message older than the cutoff, in batches
+     * @param cutoff Messages with an earlier timestamp are archived
+     * @return The number of messages removed from the table
+     */
+    public int archiveOlderThan(LocalDateTime cutoff) throws IOException {
+        long afterId = 0;
+        int total = 0;
+        while (true) {
+            List<Row> rows = jdbcTemplate.query(SELECT_SQL, MessageArchiveJob::mapRow, afterId, batchSize);
+
+            List<Long> due = new ArrayList<>(rows.size());
+            for (Row row : rows) {
+                if (!row.message().timestamp().isBefore(cutoff)) {
+                    break;
+                }
+                due.add(row.message().messageId());
+            }
+            if (due.isEmpty()) {
+                return total;
+            }
+
+            try {
+                total += transactionTemplate.execute(status -> archiveBatch(due));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (due.size() < rows.size() || rows.size() < batchSize) {
+                return total;
+            }
+            afterId = due.get(due.size() - 1);
+        }
+    }
+
+    private int archiveBatch(List<Long> messageIds) {
+        // Re-read under row locks: a message marked read since the scan is archived as read and
+        // is not taken off the unread count a second time
+        String placeholders = String.join(", ", Collections.nCopies(messageIds.size(), "?"));
+        List<Row> rows = jdbcTemplate.query(LOCK_SQL.formatted(placeholders), MessageArchiveJob::mapRow,
+                messageIds.toArray());
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        Map<List<Long>, List<Row>> byConversation = new LinkedHashMap<>();
+        for (Row row : rows) {
+            byConversation.computeIfAbsent(List.of(row.lowUserId(), row.highUserId()), key -> new ArrayList<>()).add(row);
+        }
+
+        for (Map.Entry<List<Long>, List<Row>> conversation : byConversation.entrySet()) {
+            long lowUserId = conversation.getKey().get(0);
+            long highUserId = conversation.getKey().get(1);
+            long archivedMaxId = messageArchive.archivedMaxId(lowUserId, highUserId);
+
+            List<ArchivedMessage> pending = new ArrayList<>();
+            for (Row row : conversation.getValue()) {
+                if (row.message().messageId() > archivedMaxId) {
+                    pending.add(row.message());
+                }
+            }
+            try {
+                messageArchive.append(lowUserId, highUserId, pending);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        jdbcTemplate.update("DELETE FROM messages WHERE message_id IN (" +
+                String.join(", ", Collections.nCopies(rows.size(), "?")) + ")",
+                rows.stream().map(row -> row.message().messageId()).toArray());
+
+        // Archived messages can no longer be marked read, so they leave the unread counts now
+        for (Map.Entry<List<Long>, List<Row>> conversation : byConversation.entrySet()) {
+            long lowUserId = conversation.getKey().get(0);
+            long highUserId = conversation.getKey().get(1);
+            int unreadLow = 0;
+            int unreadHigh = 0;
+            for (Row row : conversation.getValue()) {
+                if (row.message().status() != Message.MessageStatus.READ) {
+                    if (row.message().receiverId() == lowUserId) {
+                        unreadLow++;
+                    } else {
+                        unreadHigh++;
+                    }
+                }
+            }
+            if (unreadLow > 0 || unreadHigh > 0) {
+                conversationSummaryRepository.decrementUnread(lowUserId, highUserId, unreadLow, unreadHigh);
+            }
+        }
+        return rows.size();
+    }
+
+    private static Row mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new Row(
+                rs.getLong("low_user_id"),
+                rs.getLong("high_user_id"),
+                new ArchivedMessage(
+                        rs.getLong("message_id"),
+                        rs.getLong("sender_id"),
+                        rs.getLong("receiver_id"),
+                        rs.getString("content"),
+                        rs.getTimestamp("timestamp").toLocalDateTime(),
+                        Message.MessageStatus.valueOf(rs.getString("status"))));
+    }
+
+    private record Row(long lowUserId, long highUserId, ArchivedMessage message) {
+    }
+}
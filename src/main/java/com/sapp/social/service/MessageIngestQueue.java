@@ -0,0 +1,298 @@
+package com.sapp.social.service;
+
+import com.sapp.social.dto.MessageResponse;
+import com.sapp.social.event.MessageSentEvent;
+import com.sapp.social.model.ConversationSummary;
+import com.sapp.social.model.Message;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group-commits chat messages. Senders enqueue and get a future; a single writer thread takes
+ * whatever has queued up, waiting at most a few milliseconds for more, and stores the batch
+ * with one multi-row INSERT and one summary update per conversation in a single transaction.
+ * Users are referenced by id only; one lookup per batch validates them and supplies names.
+ */
+@Service
+public class MessageIngestQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageIngestQueue.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO messages (sender_id, receiver_id, content, timestamp, status, low_user_id, high_user_id) VALUES ";
+    private static final String INSERT_ROW = "(?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.chat.ingest.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.chat.ingest.max-batch-size:200}")
+    private int maxBatchSize;
+
+    @Value("${app.chat.ingest.max-delay-ms:5}")
+    private long maxDelayMs;
+
+    private BlockingQueue<Pending> queue;
+    private TransactionTemplate transactionTemplate;
+    private DistributionSummary batchSizes;
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        batchSizes = DistributionSummary.builder("chat.ingest.batch.size")
+                .description("Messages stored per group commit")
+                .register(meterRegistry);
+        Gauge.builder("chat.ingest.queue.size", queue, BlockingQueue::size)
+                .description("Messages waiting to be stored")
+                .register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::run, "message-ingest");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a message for the next group commit
+     * @param senderId The sending user
+     * @param receiverId The receiving user
+     * @param content The message text
+     * @return A future completed with the stored message, including its id, once it has committed
+     */
+    public CompletableFuture<MessageResponse> submit(Long senderId, Long receiverId, String content) {
+        Pending pending = new Pending(senderId, receiverId, content, LocalDateTime.now(), new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            pending.future.completeExceptionally(new RejectedExecutionException("Message queue is full"));
+        }
+        return pending.future;
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - batch.size());
+
+                // Give a burst a moment to fill the batch, but never hold the first message longer
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+                while (batch.size() < maxBatchSize) {
+                    long wait = deadline - System.nanoTime();
+                    Pending next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+
+                store(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                logger.error("Message ingest batch failed", e);
+                batch.forEach(pending -> pending.future.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void store(List<Pending> batch) {
+        batchSizes.record(batch.size());
+        List<Pending> valid = new ArrayList<>(batch.size());
+        List<MessageResponse> stored;
+        try {
+            stored = transactionTemplate.execute(status -> {
+                Map<Long, String> userNames = findUserNames(batch);
+                for (Pending pending : batch) {
+                    if (!userNames.containsKey(pending.senderId)) {
+                        pending.future.completeExceptionally(new IllegalArgumentException("Sender not found"));
+                    } else if (!userNames.containsKey(pending.receiverId)) {
+                        pending.future.completeExceptionally(new IllegalArgumentException("Receiver not found"));
+                    } else {
+                        valid.add(pending);
+                    }
+                }
+                return valid.isEmpty() ? List.of() : insertBatch(valid, userNames);
+            });
+        } catch (RuntimeException e) {
+            // One bad row (e.g. a user deleted meanwhile) fails the whole batch; retry one by one.
+            // The failure may come before the batch was validated, so retry every message still waiting.
+            List<Pending> waiting = batch.stream().filter(pending -> !pending.future.isDone()).toList();
+            logger.warn("Group commit of {} messages failed, retrying individually", waiting.size(), e);
+            storeIndividually(waiting);
+            return;
+        }
+        for (int i = 0; i < valid.size(); i++) {
+            valid.get(i).future.complete(stored.get(i));
+        }
+    }
+
+    private void storeIndividually(List<Pending> batch) {
+        for (Pending pending : batch) {
+            try {
+                Message message = messageService.saveMessage(pending.senderId, pending.receiverId, pending.content);
+                pending.future.complete(new MessageResponse(
+                        message.getMessageId(),
+                        message.getSender().getUserId(),
+                        message.getSender().getUserName(),
+                        message.getReceiver().getUserId(),
+                        message.getReceiver().getUserName(),
+                        message.getContent(),
+                        message.getTimestamp()
+                ));
+            } catch (RuntimeException e) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private List<MessageResponse> insertBatch(List<Pending> batch, Map<Long, String> userNames) {
+        String sql = INSERT_SQL + String.join(", ", Collections.nCopies(batch.size(), INSERT_ROW));
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            int index = 1;
+            for (Pending pending : batch) {
+                statement.setLong(index++, pending.senderId);
+                statement.setLong(index++, pending.receiverId);
+                statement.setString(index++, pending.content);
+                statement.setTimestamp(index++, Timestamp.valueOf(pending.at));
+                statement.setString(index++, Message.MessageStatus.SENT.name());
+                statement.setLong(index++, Math.min(pending.senderId, pending.receiverId));
+                statement.setLong(index++, Math.max(pending.senderId, pending.receiverId));
+            }
+            return statement;
+        }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != batch.size()) {
+            throw new IllegalStateException("Expected " + batch.size() + " generated keys, got " + keys.size());
+        }
+
+        List<MessageResponse> stored = new ArrayList<>(batch.size());
+        Map<List<Long>, SummaryDelta> summaries = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            Long messageId = ((Number) keys.get(i).values().iterator().next()).longValue();
+            MessageResponse response = new MessageResponse(messageId,
+                    pending.senderId, userNames.get(pending.senderId),
+                    pending.receiverId, userNames.get(pending.receiverId),
+                    pending.content, pending.at);
+            stored.add(response);
+
+            Long lowUserId = Math.min(pending.senderId, pending.receiverId);
+            Long highUserId = Math.max(pending.senderId, pending.receiverId);
+            summaries.computeIfAbsent(List.of(lowUserId, highUserId), key -> new SummaryDelta())
+                    .add(pending, messageId, lowUserId, highUserId);
+        }
+
+        // Several messages in one conversation fold into a single summary update
+        summaries.forEach((pair, delta) -> messageService.recordInSummary(pair.get(0), pair.get(1),
+                delta.lastMessageId, ConversationSummary.preview(delta.last.content), delta.last.at,
+                delta.last.senderId, delta.unreadLow, delta.unreadHigh));
+
+        stored.forEach(response -> eventPublisher.publishEvent(new MessageSentEvent(response)));
+        return stored;
+    }
+
+    private Map<Long, String> findUserNames(List<Pending> batch) {
+        Set<Long> userIds = new TreeSet<>();
+        for (Pending pending : batch) {
+            userIds.add(pending.senderId);
+            userIds.add(pending.receiverId);
+        }
+        String placeholders = String.join(", ", Collections.nCopies(userIds.size(), "?"));
+        Map<Long, String> names = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, user_name FROM users WHERE user_id IN (" + placeholders + ")",
+                rs -> {
+                    names.put(rs.getLong(1), rs.getString(2));
+                }, userIds.toArray());
+        return names;
+    }
+
+    private record Pending(Long senderId, Long receiverId, String content, LocalDateTime at,
+                           CompletableFuture<MessageResponse> future) {
+    }
+
+    private static class SummaryDelta {
+        private Pending last;
+        private Long lastMessageId;
+        private int unreadLow;
+        private int unreadHigh;
+
+        void add(Pending pending, Long messageId, Long lowUserId, Long highUserId) {
+            if (lastMessageId == null || messageId > lastMessageId) {
+                last = pending;
+                lastMessageId = messageId;
+            }
+            if (pending.receiverId.equals(lowUserId)) {
+                unreadLow++;
+            }
+            if (pending.receiverId.equals(highUserId)) {
+                unreadHigh++;
+            }
+        }
+    }
+}
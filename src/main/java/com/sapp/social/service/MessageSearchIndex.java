@@ -0,0 +1,466 @@
+package com.sapp.social.service;
+
+import com.sapp.social.dto.MessageResponse;
+import com.sapp.social.event.MessageSentEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process inverted index over direct message text. Every user has their own partition
+ * holding only the messages they sent or received, so a search can never see anyone else's
+ * conversations. A partition maps each term to a bitmap of message ids; queries intersect the
+ * bitmaps of their terms and walk the result from the highest id down, which is recency order.
+ * <p>
+ * Partitions are written to one segment file per user under the data directory, along with a
+ * manifest recording the highest message id covered. At startup the segments are loaded and the
+ * index catches up from the messages table, or is rebuilt from it if nothing usable is on disk.
+ */
+@Service
+public class MessageSearchIndex implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageSearchIndex.class);
+
+    private static final int SEGMENT_MAGIC = 0x4d534958; // "MSIX"
+    private static final int SEGMENT_VERSION = 1;
+    private static final String MANIFEST = "manifest";
+    private static final String SEGMENT_PREFIX = "u";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 40;
+
+    // Commits can land slightly out of id order, so catch-up re-reads a little below the
+    // watermark; adding an id that is already indexed is a no-op
+    private static final long CATCH_UP_OVERLAP = 1000;
+
+    private static final long LOAD_RETRY_INITIAL_MS = 1000;
+    private static final long LOAD_RETRY_MAX_MS = 60_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.search.data-dir:./data/search}")
+    private String dataDir;
+
+    @Value("${app.search.rebuild-batch-size:1000}")
+    private int rebuildBatchSize;
+
+    private Path directory;
+
+    private final Map<Long, Partition> partitions = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicLong highestIndexedId = new AtomicLong();
+    private final Object segmentLock = new Object();
+    private volatile boolean ready;
+
+    @PostConstruct
+    void init() throws IOException {
+        directory = Paths.get(dataDir).toAbsolutePath().normalize();
+        Files.createDirectories(directory);
+
+        Gauge.builder("search.index.partitions", partitions, Map::size)
+                .description("Users with a message search partition in memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads the persisted segments and catches up from the messages table. Runs in the
+     * background; searches are refused until it finishes. A failed load, typically the database
+     * not being reachable yet, is retried with a doubling delay until it succeeds.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        Thread loader = new Thread(() -> {
+            long delay = LOAD_RETRY_INITIAL_MS;
+            while (true) {
+                try {
+                    long watermark = loadSegments();
+                    long indexed = indexFromTable(Math.max(0, watermark - CATCH_UP_OVERLAP));
+                    ready = true;
+                    logger.info("Message search index ready: {} partitions, {} messages read from the table",
+                            partitions.size(), indexed);
+                    return;
+                } catch (RuntimeException e) {
+                    logger.error("Failed to load the message search index, retrying in {} ms", delay, e);
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                delay = Math.min(delay * 2, LOAD_RETRY_MAX_MS);
+            }
+        }, "message-search-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMessageSent(MessageSentEvent event) {
+        MessageResponse message = event.getMessage();
+        index(message.getMessageId(), message.getSenderId(), message.getReceiverId(), message.getContent());
+    }
+
+    /**
+     * Finds the user's messages containing every term of the query, newest first
+     * @param userId The user searching; only their own conversations are searched
+     * @param query Free text; matched term by term, case-insensitively
+     * @param beforeMessageId Only return messages older than this id, or null for the newest
+     * @param limit Maximum number of ids to return
+     * @return Matching message ids, highest first
+     * @throws IllegalStateException if the index is still loading
+     */
+    public List<Long> search(Long userId, String query, Long beforeMessageId, int limit) {
+        if (!ready) {
+            throw new IllegalStateException("Search index is still loading");
+        }
+        Set<String> terms = tokenize(query);
+        Partition partition = partitions.get(userId);
+        if (terms.isEmpty() || partition == null) {
+            return List.of();
+        }
+
+        Roaring64Bitmap matches = partition.intersect(terms);
+        List<Long> ids = new ArrayList<>(limit);
+        if (matches == null) {
+            return ids;
+        }
+        LongIterator iterator = matches.getReverseLongIterator();
+        while (iterator.hasNext() && ids.size() < limit) {
+            long id = iterator.next();
+            if (beforeMessageId == null || id < beforeMessageId) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Drops a deleted user's partition and its segment file. Call from the transaction that
+     * deletes the user; the partition goes once it has committed.
+     * @param userId The deleted user
+     */
+    public void removeUser(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dropPartition(userId);
+                }
+            });
+        } else {
+            dropPartition(userId);
+        }
+    }
+
+    /**
+     * Drops message ids from a user's partition that no longer resolve to a message, such as
+     * those of conversations with a partner who has since been deleted
+     * @param userId The user whose partition to prune
+     * @param messageIds Ids that were found in neither the messages table nor the archive
+     */
+    public void forget(Long userId, Collection<Long> messageIds) {
+        Partition partition = partitions.get(userId);
+        if (partition == null || messageIds.isEmpty()) {
+            return;
+        }
+        partition.removeAll(messageIds);
+        dirty.add(userId);
+    }
+
+    /**
+     * Writes the partitions changed since the last run to disk, then the manifest
+     */
+    @Scheduled(initialDelayString = "${app.search.persist-interval-ms:30000}",
+            fixedDelayString = "${app.search.persist-interval-ms:30000}")
+    public void persist() {
+        if (!ready) {
+            return;
+        }
+        // Read before writing: everything indexed by now is in the segments written below
+        long watermark = highestIndexedId.get();
+        for (Long userId : dirty) {
+            dirty.remove(userId);
+            Partition partition = partitions.get(userId);
+            if (partition == null) {
+                continue;
+            }
+            try {
+                byte[] segment = partition.serialize(userId);
+                synchronized (segmentLock) {
+                    // A user removed meanwhile must not get their segment back
+                    if (partitions.get(userId) == partition) {
+                        writeAtomically(segmentPath(userId), segment);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                dirty.add(userId);
+                logger.error("Failed to write search segment for user {}", userId, e);
+                return;
+            }
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(SEGMENT_MAGIC);
+                out.writeInt(SEGMENT_VERSION);
+                out.writeLong(watermark);
+            }
+            writeAtomically(directory.resolve(MANIFEST), bytes.toByteArray());
+        } catch (IOException e) {
+            logger.error("Failed to write search manifest", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        persist();
+    }
+
+    private void index(long messageId, Long senderId, Long receiverId, String content) {
+        Set<String> terms = tokenize(content);
+        if (terms.isEmpty()) {
+            return;
+        }
+        partition(senderId).add(terms, messageId);
+        dirty.add(senderId);
+        if (!receiverId.equals(senderId)) {
+            partition(receiverId).add(terms, messageId);
+            dirty.add(receiverId);
+        }
+        highestIndexedId.accumulateAndGet(messageId, Math::max);
+    }
+
+    private Partition partition(Long userId) {
+        return partitions.computeIfAbsent(userId, id -> new Partition());
+    }
+
+    private void dropPartition(Long userId) {
+        synchronized (segmentLock) {
+            partitions.remove(userId);
+            dirty.remove(userId);
+            try {
+                Files.deleteIfExists(segmentPath(userId));
+            } catch (IOException e) {
+                logger.warn("Could not remove search segment for user {}", userId, e);
+            }
+        }
+    }
+
+    private long indexFromTable(long afterMessageId) {
+        long indexed = 0;
+        long cursor = afterMessageId;
+        while (true) {
+            List<Object[]> rows = jdbcTemplate.query(
+                    "SELECT message_id, sender_id, receiver_id, content FROM messages " +
+                            "WHERE message_id > ? ORDER BY message_id LIMIT ?",
+                    (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getString(4)},
+                    cursor, rebuildBatchSize);
+            for (Object[] row : rows) {
+                index((Long) row[0], (Long) row[1], (Long) row[2], (String) row[3]);
+            }
+            indexed += rows.size();
+            if (rows.size() < rebuildBatchSize) {
+                return indexed;
+            }
+            cursor = (Long) rows.get(rows.size() - 1)[0];
+        }
+    }
+
+    /**
+     * @return the watermark of the loaded segments, or 0 when the index has to be rebuilt
+     */
+    private long loadSegments() {
+        Path manifest = directory.resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            return 0;
+        }
+        try {
+            long watermark;
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(manifest))) {
+                checkHeader(in);
+                watermark = in.readLong();
+            }
+            try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path segment : segments) {
+                    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+                        checkHeader(in);
+                        long userId = in.readLong();
+                        partitions.put(userId, Partition.deserialize(in));
+                    }
+                }
+            }
+            highestIndexedId.accumulateAndGet(watermark, Math::max);
+            return watermark;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Search segments in {} are unreadable, rebuilding from the messages table", directory, e);
+            partitions.clear();
+            return 0;
+        }
+    }
+
+    private static void checkHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != SEGMENT_MAGIC || in.readInt() != SEGMENT_VERSION) {
+            throw new IOException("Unknown search segment format");
+        }
+    }
+
+    private Path segmentPath(Long userId) {
+        return directory.resolve(SEGMENT_PREFIX + userId + SEGMENT_SUFFIX);
+    }
+
+    private void writeAtomically(Path target, byte[] bytes) throws IOException {
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, bytes);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Splits text into lowercase terms on anything that is not a letter or digit
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                int length = i - start;
+                if (length >= MIN_TERM_LENGTH && length <= MAX_TERM_LENGTH) {
+                    terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * One user's postings. Guarded by its own monitor; searches and writes on different users
+     * never contend.
+     */
+    private static class Partition {
+        private final Map<String, Roaring64Bitmap> postings = new HashMap<>();
+
+        synchronized void add(Set<String> terms, long messageId) {
+            for (String term : terms) {
+                postings.computeIfAbsent(term, t -> new Roaring64Bitmap()).addLong(messageId);
+            }
+        }
+
+        synchronized void removeAll(Collection<Long> messageIds) {
+            Roaring64Bitmap removed = new Roaring64Bitmap();
+            for (Long id : messageIds) {
+                removed.addLong(id);
+            }
+            postings.values().removeIf(list -> {
+                list.andNot(removed);
+                return list.isEmpty();
+            });
+        }
+
+        synchronized Roaring64Bitmap intersect(Set<String> terms) {
+            List<Roaring64Bitmap> lists = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Roaring64Bitmap list = postings.get(term);
+                if (list == null) {
+                    return null;
+                }
+                lists.add(list);
+            }
+            // Rarest term first keeps the running intersection small
+            lists.sort(Comparator.comparingLong(Roaring64Bitmap::getLongCardinality));
+            Roaring64Bitmap result = new Roaring64Bitmap();
+            result.or(lists.get(0));
+            for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+                result.and(lists.get(i));
+            }
+            return result;
+        }
+
+        synchronized byte[] serialize(Long userId) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(bytes))) {
+                    out.writeInt(SEGMENT_MAGIC);
+                    out.writeInt(SEGMENT_VERSION);
+                    out.writeLong(userId);
+                    out.writeInt(postings.size());
+                    for (Map.Entry<String, Roaring64Bitmap> entry : postings.entrySet()) {
+                        out.writeUTF(entry.getKey());
+                        entry.getValue().runOptimize();
+                        entry.getValue().serialize(out);
+                    }
+                }
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        static Partition deserialize(DataInputStream in) throws IOException {
+            Partition partition = new Partition();
+            int terms = in.readInt();
+            for (int i = 0; i < terms; i++) {
+                String term = in.readUTF();
+                Roaring64Bitmap list = new Roaring64Bitmap();
+                list.deserialize(in);
+                partition.postings.put(term, list);
+            }
+            return partition;
+        }
+    }
+}
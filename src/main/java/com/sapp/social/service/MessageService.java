@@ -1,24 +1,42 @@
 package com.sapp.social.service;
 
 
+import com.sapp.social.dto.ConversationSummaryResponse;
+import com.sapp.social.dto.FeedPage;
 import com.sapp.social.dto.MessageResponse;
+import com.sapp.social.event.MessageSentEvent;
+import com.sapp.social.event.ReceiptEvent;
+import com.sapp.social.model.ConversationSummary;
 import com.sapp.social.model.Message;
 import com.sapp.social.model.User;
+import com.sapp.social.repository.ConversationSummaryRepository;
 import com.sapp.social.repository.MessageRepository;
 import com.sapp.social.repository.UserRepository;
+import com.sapp.social.util.CursorUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class MessageService {
 
+    public static final int DEFAULT_PAGE_SIZE = 30;
+    public static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private MessageRepository messageRepository;
 
@@ -26,8 +44,18 @@ public class MessageService {
     private UserRepository userRepository;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private ConversationSummaryRepository conversationSummaryRepository;
+
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
+
+    @Autowired
+    private MessageArchive messageArchive;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
+    @Transactional
     public Message saveMessage(Long senderId, Long receiverId, String content) {
         User sender = userRepository.findById(senderId)
                 .orElseThrow(() -> new RuntimeException("Sender not found"));
@@ -42,7 +70,36 @@ public class MessageService {
         message.setTimestamp(LocalDateTime.now());
         message.setStatus(Message.MessageStatus.SENT);
 
-        return messageRepository.save(message);
+        message = messageRepository.save(message);
+        recordInSummary(message);
+        eventPublisher.publishEvent(new MessageSentEvent(convertToMessageResponse(message)));
+        return message;
+    }
+
+    private void recordInSummary(Message message) {
+        Long receiverId = message.getReceiver().getUserId();
+        recordInSummary(message.getLowUserId(), message.getHighUserId(), message.getMessageId(),
+                ConversationSummary.preview(message.getContent()), message.getTimestamp(), message.getSender().getUserId(),
+                receiverId.equals(message.getLowUserId()) ? 1 : 0,
+                receiverId.equals(message.getHighUserId()) ? 1 : 0);
+    }
+
+    /**
+     * Folds one or more new messages of a conversation into its summary. Must run inside the
+     * transaction that inserts them.
+     * @param messageId The newest of the messages
+     * @param preview Preview of the newest message
+     * @param at Timestamp of the newest message
+     * @param senderId Sender of the newest message
+     * @param unreadLowDelta Number of the messages received by the low participant
+     * @param unreadHighDelta Number of the messages received by the high participant
+     */
+    void recordInSummary(Long lowUserId, Long highUserId, Long messageId, String preview, LocalDateTime at,
+                         Long senderId, int unreadLowDelta, int unreadHighDelta) {
+        // One upsert in the caller's transaction: a concurrent first message for the same pair
+        // waits on the unique key and then updates the row instead of failing
+        conversationSummaryRepository.recordMessage(lowUserId, highUserId, messageId,
+                preview, at, senderId, unreadLowDelta, unreadHighDelta);
     }
 
     public List<MessageResponse> getConversation(Long user1Id, Long user2Id) {
@@ -54,26 +111,211 @@ public class MessageService {
 
         List<Message> messages = messageRepository.findConversation(user1, user2);
 
-        return messages.stream()
+        // Archived messages come first; rows archived but not yet deleted are taken from the table
+        long firstHotId = messages.isEmpty() ? Long.MAX_VALUE : messages.get(0).getMessageId();
+        Map<Long, User> participants = Map.of(user1.getUserId(), user1, user2.getUserId(), user2);
+        List<MessageResponse> conversation = new ArrayList<>();
+        for (MessageArchive.ArchivedMessage archived : messageArchive.readAll(
+                Math.min(user1Id, user2Id), Math.max(user1Id, user2Id))) {
+            if (archived.messageId() < firstHotId) {
+                conversation.add(convertToMessageResponse(archived, participants));
+            }
+        }
+        for (Message message : messages) {
+            conversation.add(convertToMessageResponse(message));
+        }
+        return conversation;
+    }
+
+    /**
+     * Pages the conversation between two users newest first. Each page is one range scan of
+     * the conversation index and loads both participants in the same statement. Once the table
+     * runs out, the page is filled from the conversation's archive.
+     * @param userId The user reading the conversation
+     * @param otherUserId The other participant
+     * @param cursor The cursor from the previous page, or null for the newest messages
+     * @param limit Maximum number of messages to return
+     * @return The page of messages
+     */
+    @Transactional(readOnly = true)
+    public FeedPage<MessageResponse> getConversation(Long userId, Long otherUserId, String cursor, Integer limit) {
+        int pageSize = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        Long before = CursorUtils.decode(cursor);
+        Long lowUserId = Math.min(userId, otherUserId);
+        Long highUserId = Math.max(userId, otherUserId);
+
+        Pageable pageable = PageRequest.ofSize(pageSize + 1);
+        List<Message> messages = before == null
+                ? messageRepository.findByLowUserIdAndHighUserIdOrderByMessageIdDesc(lowUserId, highUserId, pageable)
+                : messageRepository.findByLowUserIdAndHighUserIdAndMessageIdLessThanOrderByMessageIdDesc(
+                        lowUserId, highUserId, before, pageable);
+
+        List<MessageResponse> items = messages.stream()
                 .map(this::convertToMessageResponse)
                 .collect(Collectors.toList());
+        if (items.size() <= pageSize) {
+            Long archiveBefore = messages.isEmpty() ? before : messages.get(messages.size() - 1).getMessageId();
+            List<MessageArchive.ArchivedMessage> archived = messageArchive.readBefore(
+                    lowUserId, highUserId, archiveBefore, pageSize + 1 - items.size());
+            if (!archived.isEmpty()) {
+                Map<Long, User> participants = findUsersById(List.of(lowUserId, highUserId));
+                for (MessageArchive.ArchivedMessage message : archived) {
+                    items.add(convertToMessageResponse(message, participants));
+                }
+            }
+        }
+
+        boolean hasMore = items.size() > pageSize;
+        if (hasMore) {
+            items = items.subList(0, pageSize);
+        }
+
+        String nextCursor = hasMore ? CursorUtils.encode(items.get(items.size() - 1).getMessageId()) : null;
+        return new FeedPage<>(items, nextCursor, hasMore);
     }
 
+    /**
+     * Searches the user's own messages, newest first. Matching runs on the in-memory index;
+     * the page of hits is then loaded in one query.
+     * @param userId The user searching
+     * @param query Free text; every term must appear in a message for it to match
+     * @param cursor The cursor from the previous page, or null for the newest matches
+     * @param limit Maximum number of messages to return
+     * @return The page of matching messages
+     * @throws IllegalStateException if the search index is still loading
+     */
+    @Transactional(readOnly = true)
+    public FeedPage<MessageResponse> searchMessages(Long userId, String query, String cursor, Integer limit) {
+        int pageSize = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        List<Long> ids = messageSearchIndex.search(userId, query, CursorUtils.decode(cursor), pageSize + 1);
+
+        boolean hasMore = ids.size() > pageSize;
+        if (hasMore) {
+            ids = ids.subList(0, pageSize);
+        }
+
+        Map<Long, MessageResponse> messagesById = new HashMap<>();
+        for (Message message : messageRepository.findByMessageIdIn(ids)) {
+            messagesById.put(message.getMessageId(), convertToMessageResponse(message));
+        }
+        if (messagesById.size() < ids.size()) {
+            Set<Long> missing = findArchivedMessages(userId, ids, messagesById);
+            // Left behind by a deleted partner; pruned so later searches stop looking for them
+            messageSearchIndex.forget(userId, missing);
+        }
+        List<MessageResponse> items = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            MessageResponse message = messagesById.get(id);
+            if (message != null) {
+                items.add(message);
+            }
+        }
+
+        String nextCursor = hasMore ? CursorUtils.encode(ids.get(ids.size() - 1)) : null;
+        return new FeedPage<>(items, nextCursor, hasMore);
+    }
+
+    /**
+     * Looks up search hits that are no longer in the table in the archives of the user's
+     * conversations, stopping once every hit is found
+     * @return The hits found nowhere
+     */
+    private Set<Long> findArchivedMessages(Long userId, List<Long> ids, Map<Long, MessageResponse> found) {
+        Set<Long> missing = new HashSet<>(ids);
+        missing.removeAll(found.keySet());
+        for (Long partnerId : conversationSummaryRepository.findPartnerIds(userId)) {
+            if (missing.isEmpty()) {
+                break;
+            }
+            List<MessageArchive.ArchivedMessage> archived = messageArchive.findByIds(
+                    Math.min(userId, partnerId), Math.max(userId, partnerId), missing);
+            if (archived.isEmpty()) {
+                continue;
+            }
+            Map<Long, User> participants = findUsersById(List.of(userId, partnerId));
+            for (MessageArchive.ArchivedMessage message : archived) {
+                found.put(message.messageId(), convertToMessageResponse(message, participants));
+                missing.remove(message.messageId());
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Pages a user's conversations, most recent first, with the last message and the user's
+     * unread count for each. Reads the summary table only, plus one batch lookup for names.
+     * @param userId The user whose inbox to load
+     * @param cursor The cursor from the previous page, or null for the most recent conversations
+     * @param limit Maximum number of conversations to return
+     * @return The page of conversation summaries
+     */
+    @Transactional(readOnly = true)
+    public FeedPage<ConversationSummaryResponse> getInbox(Long userId, String cursor, Integer limit) {
+        int pageSize = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        Long before = CursorUtils.decode(cursor);
+
+        List<ConversationSummary> summaries = conversationSummaryRepository.findInbox(userId,
+                before == null ? Long.MAX_VALUE : before, pageSize + 1);
+
+        boolean hasMore = summaries.size() > pageSize;
+        if (hasMore) {
+            summaries = summaries.subList(0, pageSize);
+        }
+
+        Map<Long, User> others = findUsersById(summaries.stream()
+                .map(summary -> summary.otherUserId(userId))
+                .collect(Collectors.toSet()));
+
+        List<ConversationSummaryResponse> items = new ArrayList<>(summaries.size());
+        for (ConversationSummary summary : summaries) {
+            User other = others.get(summary.otherUserId(userId));
+            items.add(new ConversationSummaryResponse(
+                    summary.otherUserId(userId),
+                    other != null ? other.getUserName() : null,
+                    summary.getLastMessageId(),
+                    summary.getLastMessagePreview(),
+                    summary.getLastMessageAt(),
+                    summary.getLastSenderId(),
+                    summary.unreadFor(userId)
+            ));
+        }
+
+        String nextCursor = hasMore ? CursorUtils.encode(summaries.get(summaries.size() - 1).getLastMessageId()) : null;
+        return new FeedPage<>(items, nextCursor, hasMore);
+    }
+
+    /**
+     * Lists everyone the user has exchanged messages with, most recent conversation first
+     * @param userId The user whose chat partners to list
+     * @return The chat partners
+     */
+    @Transactional(readOnly = true)
     public List<User> getChatUsers(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        if (!userRepository.existsById(userId)) {
+            throw new RuntimeException("User not found");
+        }
 
-        List<User> senders = messageRepository.findDistinctSendersByReceiver(user);
-        List<User> receivers = messageRepository.findDistinctReceiversBySender(user);
+        List<Long> otherIds = conversationSummaryRepository.findAllForUser(userId).stream()
+                .map(summary -> summary.otherUserId(userId))
+                .collect(Collectors.toList());
+        Map<Long, User> others = findUsersById(otherIds);
 
-        List<User> allChatUsers = new ArrayList<>(senders);
-        receivers.forEach(r -> {
-            if (!allChatUsers.contains(r)) {
-                allChatUsers.add(r);
+        List<User> chatUsers = new ArrayList<>(otherIds.size());
+        for (Long otherId : otherIds) {
+            User other = others.get(otherId);
+            if (other != null) {
+                chatUsers.add(other);
             }
-        });
+        }
+        return chatUsers;
+    }
 
-        return allChatUsers;
+    private Map<Long, User> findUsersById(Collection<Long> userIds) {
+        Map<Long, User> usersById = new HashMap<>();
+        for (User user : userRepository.findAllById(userIds)) {
+            usersById.put(user.getUserId(), user);
+        }
+        return usersById;
     }
 
     public void markAsDelivered(Long messageId) {
@@ -85,15 +327,67 @@ public class MessageService {
         });
     }
 
+    @Transactional
     public void markAsRead(Long messageId) {
         Optional<Message> messageOpt = messageRepository.findById(messageId);
 
         messageOpt.ifPresent(message -> {
+            if (message.getStatus() == Message.MessageStatus.READ) {
+                return;
+            }
             message.setStatus(Message.MessageStatus.READ);
             messageRepository.save(message);
+
+            Long receiverId = message.getReceiver().getUserId();
+            conversationSummaryRepository.decrementUnread(message.getLowUserId(), message.getHighUserId(),
+                    receiverId.equals(message.getLowUserId()) ? 1 : 0,
+                    receiverId.equals(message.getHighUserId()) ? 1 : 0);
         });
     }
 
+    /**
+     * Marks every message the reader received in the conversation up to a message id as read,
+     * in one UPDATE, and takes them off the reader's unread count
+     * @param readerId The user who read the messages
+     * @param otherUserId The other participant
+     * @param upToMessageId The newest message the reader has seen
+     * @return The number of messages that changed status
+     */
+    @Transactional
+    public int markConversationRead(Long readerId, Long otherUserId, Long upToMessageId) {
+        Long lowUserId = Math.min(readerId, otherUserId);
+        Long highUserId = Math.max(readerId, otherUserId);
+
+        int updated = messageRepository.markReadUpTo(lowUserId, highUserId, readerId, upToMessageId);
+        if (updated > 0) {
+            conversationSummaryRepository.decrementUnread(lowUserId, highUserId,
+                    readerId.equals(lowUserId) ? updated : 0,
+                    readerId.equals(highUserId) ? updated : 0);
+            eventPublisher.publishEvent(new ReceiptEvent(readerId, otherUserId, upToMessageId, Message.MessageStatus.READ));
+        }
+        return updated;
+    }
+
+    /**
+     * Marks every message the receiver got in the conversation up to a message id as delivered,
+     * in one UPDATE. Messages already read are left alone.
+     * @param receiverId The user whose client received the messages
+     * @param otherUserId The other participant
+     * @param upToMessageId The newest message the client has received
+     * @return The number of messages that changed status
+     */
+    @Transactional
+    public int markConversationDelivered(Long receiverId, Long otherUserId, Long upToMessageId) {
+        Long lowUserId = Math.min(receiverId, otherUserId);
+        Long highUserId = Math.max(receiverId, otherUserId);
+
+        int updated = messageRepository.markDeliveredUpTo(lowUserId, highUserId, receiverId, upToMessageId);
+        if (updated > 0) {
+            eventPublisher.publishEvent(new ReceiptEvent(receiverId, otherUserId, upToMessageId, Message.MessageStatus.DELIVERED));
+        }
+        return updated;
+    }
+
     private MessageResponse convertToMessageResponse(Message message) {
         return new MessageResponse(
                 message.getMessageId(),
@@ -105,4 +399,18 @@ public class MessageService {
                 message.getTimestamp()
         );
     }
+
+    private MessageResponse convertToMessageResponse(MessageArchive.ArchivedMessage message, Map<Long, User> users) {
+        User sender = users.get(message.senderId());
+        User receiver = users.get(message.receiverId());
+        return new MessageResponse(
+                message.messageId(),
+                message.senderId(),
+                sender != null ? sender.getUserName() : null,
+                message.receiverId(),
+                receiver != null ? receiver.getUserName() : null,
+                message.content(),
+                message.timestamp()
+        );
+    }
 }
@@ -18,6 +18,9 @@ public class OAuth2UserService extends DefaultOAuth2UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserAvailabilityIndex userAvailabilityIndex;
+
     @Override
     public OAuth2User loadUser(OAuth2UserRequest userRequest) throws OAuth2AuthenticationException {
         OAuth2User oAuth2User = super.loadUser(userRequest);
@@ -53,6 +56,7 @@ public class OAuth2UserService extends DefaultOAuth2UserService {
             // newUser.setProfilePictureUrl(pictureUrl);
             newUser.setEnabled(true);
             userRepository.save(newUser);
+            userAvailabilityIndex.onCreated(newUser);
         }
 
         return oAuth2User;
@@ -62,19 +66,7 @@ public class OAuth2UserService extends DefaultOAuth2UserService {
         // Remove spaces and make lowercase
         String baseUsername = name.replaceAll("\\s+", "").toLowerCase();
 
-        // Check if username exists
-        if (!userRepository.existsByUserName(baseUsername)) {
-            return baseUsername;
-        }
-
-        // Add random number until unique
-        int counter = 1;
-        String username = baseUsername + counter;
-        while (userRepository.existsByUserName(username)) {
-            counter++;
-            username = baseUsername + counter;
-        }
-
-        return username;
+        // The base itself, or the base with the lowest free number appended
+        return userAvailabilityIndex.allocateUserName(baseUsername);
     }
 }
\ No newline at end of file
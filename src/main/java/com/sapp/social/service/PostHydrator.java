@@ -0,0 +1,108 @@
+package com.sapp.social.service;
+
+import com.sapp.social.dto.FeedItem;
+import com.sapp.social.dto.MediaItem;
+import com.sapp.social.model.Content;
+import com.sapp.social.model.Post;
+import com.sapp.social.repository.ContentRepository;
+import com.sapp.social.repository.PostRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Turns a list of post ids into feed items with a fixed number of queries, however long
+ * the list is: posts with their authors and counters, one IN query for contents, and at most
+ * one more for liker bitmaps that are not yet in memory.
+ */
+@Component
+public class PostHydrator {
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private LikeBitmapIndex likeBitmapIndex;
+
+    @Autowired
+    private LikeWriteBuffer likeWriteBuffer;
+
+    /**
+     * Loads feed items for the given posts
+     * @param postIds Post ids in the order the items should be returned; ids that no longer exist are skipped
+     * @param viewerId The caller, used for the liked flag; may be null
+     * @return The feed items, in the order of {@code postIds}
+     */
+    @Transactional(readOnly = true)
+    public List<FeedItem> hydrate(List<Long> postIds, Long viewerId) {
+        if (postIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, Post> posts = postRepository.findWithUserByPostIdIn(postIds).stream()
+                .collect(Collectors.toMap(Post::getPostId, Function.identity()));
+
+        Map<Long, List<MediaItem>> mediaByPost = new HashMap<>();
+        for (Content content : contentRepository.findByPostIds(postIds)) {
+            mediaByPost.computeIfAbsent(content.getPost().getPostId(), id -> new ArrayList<>())
+                    .add(toMediaItem(content));
+        }
+
+        Map<Long, Boolean> liked = viewerId == null
+                ? Map.of()
+                : likeBitmapIndex.hasLiked(viewerId, postIds);
+
+        List<FeedItem> items = new ArrayList<>(posts.size());
+        for (Long postId : postIds) {
+            Post post = posts.get(postId);
+            if (post == null) {
+                continue;
+            }
+            items.add(new FeedItem(
+                    postId,
+                    post.getPostType(),
+                    post.getDescription(),
+                    post.getImages(),
+                    post.getCreatedAt(),
+                    post.getUser().getUserId(),
+                    post.getUser().getUserName(),
+                    mediaByPost.getOrDefault(postId, new ArrayList<>()),
+                    post.getLikeCount() + likeWriteBuffer.pendingDelta(postId),
+                    post.getCommentCount(),
+                    isLiked(viewerId, postId, liked)
+            ));
+        }
+        return items;
+    }
+
+    // Unflushed toggles win over the stored likes so users see their own writes
+    private boolean isLiked(Long viewerId, Long postId, Map<Long, Boolean> storedLikes) {
+        if (viewerId == null) {
+            return false;
+        }
+        Boolean pending = likeWriteBuffer.pendingState(viewerId, postId);
+        return pending != null ? pending : storedLikes.getOrDefault(postId, false);
+    }
+
+    private MediaItem toMediaItem(Content content) {
+        return new MediaItem(
+                content.getId(),
+                content.getPath(),
+                content.getContentType(),
+                content.getFileType(),
+                content.getFileName(),
+                content.getFileSize(),
+                content.getDuration()
+        );
+    }
+}
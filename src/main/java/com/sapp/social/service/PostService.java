@@ -1,14 +1,24 @@
 package com.sapp.social.service;
 
 
+import com.sapp.social.dto.FeedItem;
+import com.sapp.social.dto.FeedPage;
+import com.sapp.social.dto.StoredFile;
+import com.sapp.social.event.PostCreatedEvent;
+import com.sapp.social.event.PostDeletedEvent;
 import com.sapp.social.model.Content;
 import com.sapp.social.model.Post;
 import com.sapp.social.model.User;
 import com.sapp.social.repository.PostRepository;
 import com.sapp.social.repository.UserRepository;
+import com.sapp.social.util.CursorUtils;
 import com.sapp.social.util.VideoUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -20,16 +30,32 @@ import java.util.Optional;
 @Service
 public class PostService {
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private PostRepository postRepository;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private PostHydrator postHydrator;
+
     @Autowired
     private FileStorageService fileStorageService;
 
+    @Autowired
+    private MediaStore mediaStore;
+
+    @Autowired
+    private TimelineService timelineService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
 
+    @Transactional
     public Post createPost(Long userId, String description, List<MultipartFile> mediaFiles) throws IOException {
         // Validate user existence
         User user = userRepository.findById(userId)
@@ -52,13 +78,15 @@ public class PostService {
         // Process media files if any
         if (mediaFiles != null && !mediaFiles.isEmpty()) {
             for (MultipartFile file : mediaFiles) {
-                String fileName = fileStorageService.storeFile(file);
+                // An identical earlier upload is reused, so this may only add the row
+                StoredFile stored = mediaStore.store(file);
 
                 Content content = new Content();
-                content.setPath(fileName);
+                content.setPath(stored.getFileName());
                 content.setContentType(file.getContentType());
                 content.setFileName(file.getOriginalFilename());
-                content.setFileSize(file.getSize());
+                content.setFileSize(stored.getSize());
+                content.setSha256(stored.getSha256());
                 content.setPost(post);
 
                 // File type handling
@@ -79,23 +107,89 @@ public class PostService {
         // Save updated post with contents attached
         post = postRepository.save(post);
 
+        // Timelines pick the post up once this transaction commits
+        eventPublisher.publishEvent(new PostCreatedEvent(post.getPostId(), userId));
+
         return post;
     }
 
 
 
-    public List<Post> getPostsByUserId(Long userId) {
-        return postRepository.findByUserUserIdOrderByPostIdDesc(userId);
+    /**
+     * Returns one page of the home feed, newest first
+     * @param cursor Opaque cursor from the previous page, or null for the first page
+     * @param limit Requested page size, clamped to {@link #MAX_PAGE_SIZE}
+     * @param viewerId The caller, used for the liked flag; may be null
+     * @return The page and the cursor for the next one
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public FeedPage<FeedItem> getFeed(String cursor, Integer limit, Long viewerId) {
+        Long before = CursorUtils.decode(cursor);
+        int pageSize = clampPageSize(limit);
+
+        List<Long> postIds = timelineService.getHomeTimeline(before, pageSize + 1);
+        if (postIds == null) {
+            Pageable pageable = PageRequest.ofSize(pageSize + 1);
+            postIds = before == null
+                    ? postRepository.findRecentPostIds(pageable)
+                    : postRepository.findPostIdsBefore(before, pageable);
+        }
+
+        return toPage(postIds, pageSize, viewerId);
     }
 
-    public List<Post> getAllPosts() {
-        return postRepository.findAllByOrderByPostIdDesc();
+    /**
+     * Returns one page of a user's posts, newest first
+     * @param userId The author whose posts to list
+     * @param cursor Opaque cursor from the previous page, or null for the first page
+     * @param limit Requested page size, clamped to {@link #MAX_PAGE_SIZE}
+     * @param viewerId The caller, used for the liked flag; may be null
+     * @return The page and the cursor for the next one
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public FeedPage<FeedItem> getPostsByUserId(Long userId, String cursor, Integer limit, Long viewerId) {
+        Long before = CursorUtils.decode(cursor);
+        int pageSize = clampPageSize(limit);
+
+        List<Long> postIds = timelineService.getUserTimeline(userId, before, pageSize + 1);
+        if (postIds == null) {
+            Pageable pageable = PageRequest.ofSize(pageSize + 1);
+            postIds = before == null
+                    ? postRepository.findRecentPostIdsByUserId(userId, pageable)
+                    : postRepository.findPostIdsByUserIdBefore(userId, before, pageable);
+        }
+
+        return toPage(postIds, pageSize, viewerId);
+    }
+
+    // One extra id is fetched so we know whether another page exists without a COUNT query
+    private FeedPage<FeedItem> toPage(List<Long> postIds, int pageSize, Long viewerId) {
+        boolean hasMore = postIds.size() > pageSize;
+        List<Long> page = hasMore ? postIds.subList(0, pageSize) : postIds;
+        String nextCursor = hasMore ? CursorUtils.encode(page.get(page.size() - 1)) : null;
+        return new FeedPage<>(postHydrator.hydrate(page, viewerId), nextCursor, hasMore);
+    }
+
+    public FeedItem toFeedItem(Post post, Long viewerId) {
+        return postHydrator.hydrate(List.of(post.getPostId()), viewerId).get(0);
+    }
+
+    private int clampPageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
     }
 
     public Optional<Post> getPostById(Long postId) {
         return postRepository.findById(postId);
     }
 
+    public Optional<FeedItem> getFeedItem(Long postId, Long viewerId) {
+        return postHydrator.hydrate(List.of(postId), viewerId).stream().findFirst();
+    }
+
+    @Transactional
     public boolean deletePost(Long postId, Long userId) {
         Optional<Post> postOpt = postRepository.findById(postId);
 
@@ -104,7 +198,10 @@ public class PostService {
             if (!post.getUser().getUserId().equals(userId)) {
                 throw new SecurityException("Unauthorized: You can only delete your own posts");
             }
+            List<String> paths = post.getContents().stream().map(Content::getPath).toList();
             postRepository.delete(post);
+            mediaStore.release(paths);
+            eventPublisher.publishEvent(new PostDeletedEvent(postId, userId));
             return true;
         } else {
             return false;
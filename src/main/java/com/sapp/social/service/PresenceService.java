@@ -0,0 +1,216 @@
+package com.sapp.social.service;
+
+import com.sapp.social.dto.PresenceResponse;
+import com.sapp.social.repository.ConversationSummaryRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks who is online from client heartbeats. Last-heartbeat times live in a sharded map;
+ * expiry goes through a timer wheel with one bucket per tick, so each tick only looks at the
+ * users whose TTL may end in it instead of scanning everyone. Online and offline changes are
+ * collected per tick and pushed once to each online chat partner.
+ */
+@Service
+public class PresenceService {
+
+    public static final String PRESENCE_DESTINATION = "/queue/presence";
+
+    private static final int SHARDS = 16;
+
+    // Changed users per partner query, keeping the IN list a reasonable size after a mass expiry
+    private static final int PARTNER_LOOKUP_SIZE = 500;
+
+    @Autowired
+    private ConversationSummaryRepository conversationSummaryRepository;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Clock clock;
+
+    @Value("${app.presence.ttl-ms:60000}")
+    private long ttlMs;
+
+    @Value("${app.presence.tick-ms:1000}")
+    private long tickMs;
+
+    private final List<Map<Long, Long>> shards = new ArrayList<>(SHARDS);
+
+    private List<Set<Long>> wheel;
+    private long lastTick;
+
+    // Latest state per user since the previous tick; a flap inside one tick pushes only its outcome
+    private final Map<Long, Boolean> changes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        for (int i = 0; i < SHARDS; i++) {
+            shards.add(new ConcurrentHashMap<>());
+        }
+        // Big enough that a fresh heartbeat never lands in a bucket that has not been drained yet
+        int slots = (int) ((ttlMs + tickMs - 1) / tickMs) + 2;
+        wheel = new ArrayList<>(slots);
+        for (int i = 0; i < slots; i++) {
+            wheel.add(ConcurrentHashMap.newKeySet());
+        }
+        lastTick = clock.millis() / tickMs;
+
+        Gauge.builder("presence.online", this, PresenceService::onlineCount)
+                .description("Users with a live heartbeat")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records a heartbeat, bringing the user online if they were not
+     * @param userId The user whose client is alive
+     */
+    public void heartbeat(Long userId) {
+        long now = clock.millis();
+        // Recorded under the entry's lock, so an expiry of the same user is ordered before or after
+        shardFor(userId).compute(userId, (id, previous) -> {
+            if (previous == null) {
+                changes.put(id, true);
+            }
+            return now;
+        });
+        wheel.get(slotFor(now)).add(userId);
+    }
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        if (event.getUser() != null) {
+            heartbeat(Long.parseLong(event.getUser().getName()));
+        }
+    }
+
+    public boolean isOnline(Long userId) {
+        return shardFor(userId).containsKey(userId);
+    }
+
+    /**
+     * @param userIds The users to look up
+     * @return Whether each user is online, in the order given
+     */
+    public Map<Long, Boolean> getOnlineStatuses(Collection<Long> userIds) {
+        Map<Long, Boolean> statuses = new LinkedHashMap<>();
+        for (Long userId : userIds) {
+            statuses.put(userId, isOnline(userId));
+        }
+        return statuses;
+    }
+
+    @Scheduled(fixedRateString = "${app.presence.tick-ms:1000}")
+    public void tick() {
+        long now = clock.millis();
+        long currentTick = now / tickMs;
+        // After a stall, one pass over the wheel covers every bucket
+        for (long t = Math.max(lastTick + 1, currentTick - wheel.size() + 1); t <= currentTick; t++) {
+            expire((int) (t % wheel.size()), now);
+        }
+        lastTick = currentTick;
+        publishChanges();
+    }
+
+    private void expire(int slot, long now) {
+        Set<Long> bucket = wheel.get(slot);
+        for (Long userId : bucket) {
+            Map<Long, Long> shard = shardFor(userId);
+            Long lastSeen = shard.get(userId);
+            if (lastSeen == null) {
+                bucket.remove(userId);
+            } else if (lastSeen + ttlMs <= now) {
+                // Removal and change are one step under the entry's lock; a heartbeat that got
+                // in first has refreshed the time and keeps the user online
+                shard.computeIfPresent(userId, (id, seen) -> {
+                    if (seen + ttlMs > now) {
+                        return seen;
+                    }
+                    changes.put(id, false);
+                    return null;
+                });
+                bucket.remove(userId);
+            } else if (slotFor(lastSeen) != slot) {
+                // A later heartbeat already put the user in the bucket where they now expire
+                bucket.remove(userId);
+            }
+        }
+    }
+
+    private int slotFor(long lastSeen) {
+        long expiryTick = (lastSeen + ttlMs + tickMs - 1) / tickMs;
+        return (int) (expiryTick % wheel.size());
+    }
+
+    private void publishChanges() {
+        if (changes.isEmpty()) {
+            return;
+        }
+        Map<Long, Boolean> batch = new HashMap<>();
+        for (Long userId : changes.keySet()) {
+            Boolean online = changes.remove(userId);
+            if (online != null) {
+                batch.put(userId, online);
+            }
+        }
+
+        // One partner lookup per slice of changed users, however many changed in this tick
+        Map<Long, List<PresenceResponse>> byRecipient = new HashMap<>();
+        List<Long> changed = new ArrayList<>(batch.keySet());
+        for (int from = 0; from < changed.size(); from += PARTNER_LOOKUP_SIZE) {
+            List<Long> slice = changed.subList(from, Math.min(from + PARTNER_LOOKUP_SIZE, changed.size()));
+            for (Object[] pair : conversationSummaryRepository.findPairsForUsers(slice)) {
+                Long lowUserId = (Long) pair[0];
+                Long highUserId = (Long) pair[1];
+                notifyPartner(byRecipient, batch, lowUserId, highUserId);
+                if (!lowUserId.equals(highUserId)) {
+                    notifyPartner(byRecipient, batch, highUserId, lowUserId);
+                }
+            }
+        }
+        byRecipient.forEach((recipientId, updates) ->
+                messagingTemplate.convertAndSendToUser(recipientId.toString(), PRESENCE_DESTINATION, updates));
+    }
+
+    private void notifyPartner(Map<Long, List<PresenceResponse>> byRecipient, Map<Long, Boolean> batch,
+                               Long userId, Long partnerId) {
+        Boolean online = batch.get(userId);
+        if (online != null && isOnline(partnerId)) {
+            byRecipient.computeIfAbsent(partnerId, id -> new ArrayList<>()).add(new PresenceResponse(userId, online));
+        }
+    }
+
+    private long onlineCount() {
+        long count = 0;
+        for (Map<Long, Long> shard : shards) {
+            count += shard.size();
+        }
+        return count;
+    }
+
+    private Map<Long, Long> shardFor(Long userId) {
+        return shards.get((int) Math.floorMod(userId, (long) SHARDS));
+    }
+}
@@ -0,0 +1,66 @@
+package com.sapp.social.service;
+
+import com.sapp.social.model.Message;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects delivered and read acks and writes them on a short timer. Clients ack every message
+ * as it arrives or scrolls into view, but only the highest watermark per conversation matters,
+ * so acks within one interval collapse into a single bulk UPDATE.
+ */
+@Service
+public class ReceiptCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptCoalescer.class);
+
+    @Autowired
+    private MessageService messageService;
+
+    private final Map<ReceiptKey, Long> watermarks = new ConcurrentHashMap<>();
+
+    public void markRead(Long readerId, Long otherUserId, Long upToMessageId) {
+        watermarks.merge(new ReceiptKey(readerId, otherUserId, Message.MessageStatus.READ), upToMessageId, Math::max);
+    }
+
+    public void markDelivered(Long receiverId, Long otherUserId, Long upToMessageId) {
+        watermarks.merge(new ReceiptKey(receiverId, otherUserId, Message.MessageStatus.DELIVERED), upToMessageId, Math::max);
+    }
+
+    @Scheduled(fixedDelayString = "${app.chat.receipts.flush-interval-ms:250}")
+    public void flush() {
+        for (ReceiptKey key : watermarks.keySet()) {
+            Long upToMessageId = watermarks.remove(key);
+            if (upToMessageId == null) {
+                continue;
+            }
+            try {
+                if (key.status() == Message.MessageStatus.READ) {
+                    messageService.markConversationRead(key.userId(), key.otherUserId(), upToMessageId);
+                } else {
+                    messageService.markConversationDelivered(key.userId(), key.otherUserId(), upToMessageId);
+                }
+            } catch (RuntimeException e) {
+                // Put it back for the next flush; an ack that arrived meanwhile may already be higher
+                watermarks.merge(key, upToMessageId, Math::max);
+                logger.warn("Failed to write {} receipt for user {} up to message {}, retrying on the next flush",
+                        key.status(), key.userId(), upToMessageId, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+        flush();
+    }
+
+    private record ReceiptKey(Long userId, Long otherUserId, Message.MessageStatus status) {
+    }
+}
@@ -0,0 +1,177 @@
+package com.sapp.social.service;
+
+import com.sapp.social.event.PostCreatedEvent;
+import com.sapp.social.event.PostDeletedEvent;
+import com.sapp.social.repository.PostRepository;
+import com.sapp.social.util.LongRingBuffer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * In-memory timelines of post ids. New posts are pushed into the home timeline and the
+ * author's timeline once their transaction commits (fan-out on write), so feed reads become
+ * a slice of a bounded ring followed by one batched load of the posts.
+ *
+ * Each timeline is seeded lazily from the database the first time it is read. A read that
+ * reaches past what the ring holds returns null and the caller falls back to the database.
+ * At most {@code app.timeline.max-user-timelines} user timelines are kept; the least recently
+ * read one is dropped to make room and is seeded again if it is read later.
+ */
+@Service
+public class TimelineService {
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.timeline.capacity:500}")
+    private int capacity;
+
+    @Value("${app.timeline.max-user-timelines:10000}")
+    private int maxUserTimelines;
+
+    private Timeline homeTimeline;
+
+    // Access-ordered LRU, guarded by its own monitor
+    private Map<Long, Timeline> userTimelines;
+
+    @PostConstruct
+    void init() {
+        homeTimeline = new Timeline(capacity);
+        userTimelines = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Timeline> eldest) {
+                return size() > maxUserTimelines;
+            }
+        };
+
+        Gauge.builder("timeline.count", this, service -> service.userTimelineCount() + 1)
+                .description("Number of timelines held in memory")
+                .register(meterRegistry);
+        Gauge.builder("timeline.memory.bytes", this, TimelineService::estimatedMemoryBytes)
+                .description("Estimated heap used by timeline ring buffers")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("timeline.memory.per.user.max.bytes", () -> (long) capacity * Long.BYTES)
+                .description("Upper bound on ring buffer memory per user timeline")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns up to {@code limit} post ids from the home timeline, newest first
+     * @param before Exclusive upper bound on post id, or null for the newest posts
+     * @param limit Number of ids wanted
+     * @return The ids, or null if the ring cannot answer and the caller must query the database
+     */
+    public List<Long> getHomeTimeline(Long before, int limit) {
+        return homeTimeline.slice(before, limit,
+                () -> postRepository.findRecentPostIds(PageRequest.ofSize(capacity)));
+    }
+
+    /**
+     * Returns up to {@code limit} post ids authored by a user, newest first
+     * @param userId The author
+     * @param before Exclusive upper bound on post id, or null for the newest posts
+     * @param limit Number of ids wanted
+     * @return The ids, or null if the ring cannot answer and the caller must query the database
+     */
+    public List<Long> getUserTimeline(Long userId, Long before, int limit) {
+        Timeline timeline;
+        synchronized (userTimelines) {
+            timeline = userTimelines.computeIfAbsent(userId, id -> new Timeline(capacity));
+        }
+        return timeline.slice(before, limit,
+                () -> postRepository.findRecentPostIdsByUserId(userId, PageRequest.ofSize(capacity)));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPostCreated(PostCreatedEvent event) {
+        homeTimeline.push(event.getPostId());
+
+        Timeline timeline = cachedUserTimeline(event.getUserId());
+        if (timeline != null) {
+            timeline.push(event.getPostId());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPostDeleted(PostDeletedEvent event) {
+        homeTimeline.remove(event.getPostId());
+
+        Timeline timeline = cachedUserTimeline(event.getUserId());
+        if (timeline != null) {
+            timeline.remove(event.getPostId());
+        }
+    }
+
+    private Timeline cachedUserTimeline(Long userId) {
+        synchronized (userTimelines) {
+            return userTimelines.get(userId);
+        }
+    }
+
+    private int userTimelineCount() {
+        synchronized (userTimelines) {
+            return userTimelines.size();
+        }
+    }
+
+    private long estimatedMemoryBytes() {
+        return (long) (userTimelineCount() + 1) * capacity * Long.BYTES;
+    }
+
+    private static class Timeline {
+        private final LongRingBuffer ring;
+        private boolean seeded;
+        private boolean holdsFullHistory; // the seed query returned fewer rows than the ring holds
+
+        Timeline(int capacity) {
+            this.ring = new LongRingBuffer(capacity);
+        }
+
+        // The seed query runs under the lock so a commit racing with it is either
+        // seen by the query or pushed afterwards; duplicates are ignored by the ring.
+        synchronized List<Long> slice(Long before, int limit, Supplier<List<Long>> seed) {
+            if (!seeded) {
+                List<Long> ids = seed.get();
+                ring.reset(ids);
+                holdsFullHistory = ids.size() < ring.capacity();
+                seeded = true;
+            }
+
+            List<Long> ids = ring.sliceBefore(before, limit);
+            if (ids.size() == limit || (holdsFullHistory && !ring.isTruncated())) {
+                return ids;
+            }
+            return null;
+        }
+
+        synchronized void push(long postId) {
+            // Unseeded timelines pick the post up from the database when first read
+            if (seeded) {
+                ring.push(postId);
+            }
+        }
+
+        synchronized void remove(long postId) {
+            if (seeded) {
+                ring.remove(postId);
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.sapp.social.service;
+
+import com.sapp.social.model.User;
+import com.sapp.social.repository.UserRepository;
+import com.sapp.social.util.CountingBloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Answers "is this email / username taken" from counting Bloom filters, so the signup form's
+ * availability checks only reach the database when the filter says the value might exist.
+ * Both filters are filled from the users table at startup and kept current by UserService,
+ * AuthController and OAuth2UserService on create, rename and delete. Until the startup load
+ * finishes every check goes to the database.
+ * <p>
+ * Values are decomposed, stripped of accents and lowercased before hashing, so "José" and
+ * "jose" share an entry as they share a row under the default accent- and case-insensitive
+ * collation. That collation folds a few more characters than this (e.g. "ß" and "ss"), so the
+ * filters are not a strict superset of it: a value they wrongly report as free is still stopped
+ * by the unique index, which the signup and user endpoints turn into the same 400 answer.
+ * Removals wait for the deleting transaction to commit; a rolled-back rename or delete
+ * therefore leaves at most a false positive behind, never a false "available".
+ */
+@Component
+public class UserAvailabilityIndex implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserAvailabilityIndex.class);
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.users.bloom.expected-users:100000}")
+    private int expectedUsers;
+
+    @Value("${app.users.bloom.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private CountingBloomFilter emails;
+    private CountingBloomFilter userNames;
+
+    private volatile boolean ready;
+
+    private Counter filterNegatives;
+    private Counter databaseChecks;
+
+    @PostConstruct
+    void init() {
+        emails = new CountingBloomFilter(expectedUsers, falsePositiveRate);
+        userNames = new CountingBloomFilter(expectedUsers, falsePositiveRate);
+
+        filterNegatives = Counter.builder("users.availability.checks")
+                .tag("source", "filter")
+                .description("Availability checks answered by the Bloom filter alone")
+                .register(meterRegistry);
+        databaseChecks = Counter.builder("users.availability.checks")
+                .tag("source", "database")
+                .description("Availability checks that went to the database")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long[] loaded = {0};
+        jdbcTemplate.query("SELECT user_name, email FROM users", rs -> {
+            userNames.add(normalize(rs.getString("user_name")));
+            emails.add(normalize(rs.getString("email")));
+            loaded[0]++;
+        });
+        ready = true;
+        logger.info("Loaded {} users into the availability filters ({} bytes)", loaded[0],
+                emails.sizeInBytes() + userNames.sizeInBytes());
+    }
+
+    public boolean emailExists(String email) {
+        if (email == null) {
+            return false;
+        }
+        if (ready && !emails.mightContain(normalize(email))) {
+            filterNegatives.increment();
+            return false;
+        }
+        databaseChecks.increment();
+        return userRepository.existsByEmail(email);
+    }
+
+    public boolean userNameExists(String userName) {
+        if (userName == null) {
+            return false;
+        }
+        if (ready && !userNames.mightContain(normalize(userName))) {
+            filterNegatives.increment();
+            return false;
+        }
+        databaseChecks.increment();
+        return userRepository.existsByUserName(userName);
+    }
+
+    /**
+     * Picks a free username: the base itself, or the base followed by the smallest free
+     * number. Reads every taken name with the base as prefix in one query.
+     * @param base The desired username
+     * @return A username that was free when checked
+     */
+    public String allocateUserName(String base) {
+        if (!userNameExists(base)) {
+            return base;
+        }
+
+        Set<Integer> taken = new HashSet<>();
+        for (String userName : userRepository.findUserNamesStartingWith(escapeLike(base))) {
+            String suffix = userName.substring(base.length());
+            if (!suffix.isEmpty() && suffix.length() <= 9 && suffix.chars().allMatch(Character::isDigit)) {
+                taken.add(Integer.parseInt(suffix));
+            }
+        }
+        int counter = 1;
+        while (taken.contains(counter)) {
+            counter++;
+        }
+        return base + counter;
+    }
+
+    public void onCreated(User user) {
+        userNames.add(normalize(user.getUserName()));
+        emails.add(normalize(user.getEmail()));
+    }
+
+    /**
+     * Records a change of username or email. New values are added at once; old ones are
+     * removed after commit.
+     */
+    public void onChanged(String oldUserName, String newUserName, String oldEmail, String newEmail) {
+        if (!normalize(oldUserName).equals(normalize(newUserName))) {
+            userNames.add(normalize(newUserName));
+            removeAfterCommit(userNames, oldUserName);
+        }
+        if (!normalize(oldEmail).equals(normalize(newEmail))) {
+            emails.add(normalize(newEmail));
+            removeAfterCommit(emails, oldEmail);
+        }
+    }
+
+    public void onDeleted(User user) {
+        removeAfterCommit(userNames, user.getUserName());
+        removeAfterCommit(emails, user.getEmail());
+    }
+
+    private void removeAfterCommit(CountingBloomFilter filter, String value) {
+        // Before the startup load completes the value may not be in the filter yet, and
+        // removing it would clear counters other values rely on
+        if (!ready) {
+            return;
+        }
+        String key = normalize(value);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    filter.remove(key);
+                }
+            });
+        } else {
+            filter.remove(key);
+        }
+    }
+
+    private static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
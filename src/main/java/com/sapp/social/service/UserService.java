@@ -1,23 +1,50 @@
 package com.sapp.social.service;
 
 import com.sapp.social.model.User;
+import com.sapp.social.repository.ContentRepository;
+import com.sapp.social.repository.ConversationSummaryRepository;
 import com.sapp.social.repository.UserRepository;
+import com.sapp.social.security.PrincipalCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 public class UserService {
 
+    private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private ConversationSummaryRepository conversationSummaryRepository;
+
+    @Autowired
+    private MessageArchive messageArchive;
+
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private MediaStore mediaStore;
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private UserAvailabilityIndex userAvailabilityIndex;
 
     /**
      * Retrieves all users from the database
@@ -56,30 +83,30 @@ public class UserService {
 
     /**
      * Creates a new user
-     * @param user The user to create
+     * @param user The user to create, with its password already encoded. Hash it before calling:
+     *             the encoder may queue, and this method holds a database connection throughout
      * @return The created user with ID
      * @throws IllegalArgumentException if email or username already exists
      */
     @Transactional
     public User createUser(User user) {
-        if (userRepository.existsByEmail(user.getEmail())) {
+        if (userAvailabilityIndex.emailExists(user.getEmail())) {
             throw new IllegalArgumentException("Email already in use");
         }
 
-        if (userRepository.existsByUserName(user.getUserName())) {
+        if (userAvailabilityIndex.userNameExists(user.getUserName())) {
             throw new IllegalArgumentException("Username already in use");
         }
 
-        // Encode password before saving
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
-
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userAvailabilityIndex.onCreated(saved);
+        return saved;
     }
 
     /**
      * Updates an existing user
      * @param userId The ID of the user to update
-     * @param userDetails The updated user details
+     * @param userDetails The updated user details; a password, if given, must already be encoded
      * @return The updated user
      * @throws IllegalArgumentException if user not found
      */
@@ -90,22 +117,28 @@ public class UserService {
 
         // Check if email is being changed and if it's already taken
         if (!user.getEmail().equals(userDetails.getEmail()) &&
-                userRepository.existsByEmail(userDetails.getEmail())) {
+                userAvailabilityIndex.emailExists(userDetails.getEmail())) {
             throw new IllegalArgumentException("Email already in use");
         }
 
         // Check if username is being changed and if it's already taken
         if (!user.getUserName().equals(userDetails.getUserName()) &&
-                userRepository.existsByUserName(userDetails.getUserName())) {
+                userAvailabilityIndex.userNameExists(userDetails.getUserName())) {
             throw new IllegalArgumentException("Username already in use");
         }
 
+        // The principal is cached by email; drop it under the old and the new address
+        principalCache.invalidate(user.getEmail());
+        principalCache.invalidate(userDetails.getEmail());
+        userAvailabilityIndex.onChanged(user.getUserName(), userDetails.getUserName(),
+                user.getEmail(), userDetails.getEmail());
+
         user.setUserName(userDetails.getUserName());
         user.setEmail(userDetails.getEmail());
 
         // Only update password if provided
         if (userDetails.getPassword() != null && !userDetails.getPassword().isEmpty()) {
-            user.setPassword(passwordEncoder.encode(userDetails.getPassword()));
+            user.setPassword(userDetails.getPassword());
         }
 
         user.setEnabled(userDetails.isEnabled());
@@ -120,10 +153,26 @@ public class UserService {
      */
     @Transactional
     public void deleteUser(Long userId) {
-        if (!userRepository.existsById(userId)) {
-            throw new IllegalArgumentException("User not found with id: " + userId);
-        }
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("User not found with id: " + userId));
+        principalCache.invalidate(user.getEmail());
+        userAvailabilityIndex.onDeleted(user);
+        conversationSummaryRepository.deleteByUserId(userId);
+        List<String> mediaPaths = contentRepository.findPathsByUserId(userId);
         userRepository.deleteById(userId);
+        mediaStore.release(mediaPaths);
+        messageSearchIndex.removeUser(userId);
+        // Archive files cannot come back after a rollback, so they go once the delete has committed
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    messageArchive.deleteConversationsOf(userId);
+                } catch (IOException e) {
+                    logger.warn("Could not remove archived conversations of user {}", userId, e);
+                }
+            }
+        });
     }
 
     /**
@@ -136,13 +185,33 @@ public class UserService {
         return userRepository.findByProviderAndProviderId(provider, providerId);
     }
 
+    /**
+     * Works out which unique field a rejected insert or update collided on. The database
+     * compares under its own collation, which the availability filters do not model, so it is
+     * asked again once the failed transaction has rolled back.
+     * @param userId The user being updated, or null for a new one
+     * @param userName The username that was written
+     * @param email The email that was written
+     * @return An error message naming the field in use, or a neutral one if the conflicting row
+     *         is no longer there
+     */
+    public String describeConflict(Long userId, String userName, String email) {
+        if (userRepository.findByEmail(email).filter(other -> !other.getUserId().equals(userId)).isPresent()) {
+            return "Email already in use";
+        }
+        if (userRepository.findByUserName(userName).filter(other -> !other.getUserId().equals(userId)).isPresent()) {
+            return "Username already in use";
+        }
+        return "Username or email already in use";
+    }
+
     /**
      * Checks if an email address is already registered
      * @param email The email address to check
      * @return true if the email exists, false otherwise
      */
     public boolean existsByEmail(String email) {
-        return userRepository.existsByEmail(email);
+        return userAvailabilityIndex.emailExists(email);
     }
 
     /**
@@ -151,6 +220,6 @@ public class UserService {
      * @return true if the username exists, false otherwise
      */
     public boolean existsByUsername(String username) {
-        return userRepository.existsByUserName(username);
+        return userAvailabilityIndex.userNameExists(username);
     }
 }
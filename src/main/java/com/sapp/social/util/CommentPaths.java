@@ -0,0 +1,89 @@
+package com.sapp.social.util;
+
+/**
+ * Builds the materialized paths stored on comments. A path lists the ids from the thread root
+ * down to the comment as fixed-width base36 segments joined by '/', so every subtree is one
+ * contiguous range of the path index and sorting by path yields depth-first thread order.
+ */
+public final class CommentPaths {
+
+    public static final int SEGMENT_WIDTH = 8;
+    public static final char SEPARATOR = '/';
+
+    // 760 characters keeps the utf8mb4 index under MySQL's 3072 byte key limit
+    public static final int MAX_LENGTH = 760;
+    public static final int MAX_DEPTH = (MAX_LENGTH + 1) / (SEGMENT_WIDTH + 1);
+
+    private CommentPaths() {
+    }
+
+    /**
+     * Encodes a single comment id as a path segment
+     *
+     * @param commentId The comment id
+     * @return The zero-padded base36 segment
+     */
+    public static String segment(Long commentId) {
+        String digits = Long.toString(commentId, 36);
+        if (digits.length() > SEGMENT_WIDTH) {
+            throw new IllegalArgumentException("Comment id out of range: " + commentId);
+        }
+        return "0".repeat(SEGMENT_WIDTH - digits.length()) + digits;
+    }
+
+    /**
+     * Builds the path of a comment from its parent's path
+     *
+     * @param parentPath The parent's path, or null for a top-level comment
+     * @param commentId The comment id
+     * @return The comment's path
+     */
+    public static String childPath(String parentPath, Long commentId) {
+        if (parentPath == null) {
+            return segment(commentId);
+        }
+        return parentPath + SEPARATOR + segment(commentId);
+    }
+
+    /**
+     * Exclusive lower bound of the descendants of a path
+     *
+     * @param path The subtree root's path
+     * @return The bound that every descendant sorts after
+     */
+    public static String descendantsFrom(String path) {
+        return path + SEPARATOR;
+    }
+
+    /**
+     * Exclusive upper bound of a subtree. '0' is the character right after the separator,
+     * so nothing outside the subtree falls between the path and this bound.
+     *
+     * @param path The subtree root's path
+     * @return The bound that every member of the subtree sorts before
+     */
+    public static String subtreeUpperBound(String path) {
+        return path + '0';
+    }
+
+    public static int depth(String path) {
+        return (path.length() + 1) / (SEGMENT_WIDTH + 1);
+    }
+
+    /**
+     * Cuts a descendant's path back to the path of one of its ancestors
+     *
+     * @param path A path below the ancestor
+     * @param ancestorId The ancestor's comment id
+     * @return The ancestor's path, or null if the id is not on the path
+     */
+    public static String ancestorPath(String path, Long ancestorId) {
+        String segment = segment(ancestorId);
+        for (int start = 0; start + SEGMENT_WIDTH <= path.length(); start += SEGMENT_WIDTH + 1) {
+            if (path.startsWith(segment, start)) {
+                return path.substring(0, start + SEGMENT_WIDTH);
+            }
+        }
+        return null;
+    }
+}
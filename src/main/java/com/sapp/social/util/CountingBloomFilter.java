@@ -0,0 +1,108 @@
+package com.sapp.social.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Counting Bloom filter over strings. Each slot is a 4-bit counter, so elements can be removed
+ * as well as added. {@link #mightContain} never answers false for an element that was added and
+ * not removed; it answers true for an absent one with roughly the configured probability.
+ * A counter that reaches 15 sticks there, which can only cause false positives.
+ * Mutations are synchronized; reads are not and may miss an element added concurrently.
+ */
+public class CountingBloomFilter {
+
+    private static final int MAX_COUNT = 15;
+
+    private final long[] counters; // 16 four-bit counters per long
+    private final int slots;
+    private final int hashes;
+
+    /**
+     * @param expectedElements The number of elements the filter is sized for
+     * @param falsePositiveRate The target false positive rate at that size, e.g. 0.01
+     */
+    public CountingBloomFilter(int expectedElements, double falsePositiveRate) {
+        if (expectedElements <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter size");
+        }
+        long bits = (long) Math.ceil(-expectedElements * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.slots = (int) Math.min(Math.max(bits, 64), Integer.MAX_VALUE - 15);
+        this.hashes = Math.max(1, (int) Math.round((double) slots / expectedElements * Math.log(2)));
+        this.counters = new long[(slots + 15) / 16];
+    }
+
+    public synchronized void add(String element) {
+        long hash = hash(element);
+        for (int i = 0; i < hashes; i++) {
+            int slot = slot(hash, i);
+            int count = count(slot);
+            if (count < MAX_COUNT) {
+                set(slot, count + 1);
+            }
+        }
+    }
+
+    /**
+     * Removes an element. Must only be called for elements that were added, or other
+     * elements may start to look absent.
+     */
+    public synchronized void remove(String element) {
+        long hash = hash(element);
+        for (int i = 0; i < hashes; i++) {
+            int slot = slot(hash, i);
+            int count = count(slot);
+            if (count > 0 && count < MAX_COUNT) {
+                set(slot, count - 1);
+            }
+        }
+    }
+
+    public boolean mightContain(String element) {
+        long hash = hash(element);
+        for (int i = 0; i < hashes; i++) {
+            if (count(slot(hash, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the memory held by the counters
+     */
+    public long sizeInBytes() {
+        return (long) counters.length * Long.BYTES;
+    }
+
+    private int count(int slot) {
+        return (int) (counters[slot >>> 4] >>> ((slot & 15) << 2)) & 0xF;
+    }
+
+    private void set(int slot, int count) {
+        int shift = (slot & 15) << 2;
+        int index = slot >>> 4;
+        counters[index] = (counters[index] & ~(0xFL << shift)) | ((long) count << shift);
+    }
+
+    // Double hashing: slot i is h1 + i * h2, both halves of one 64-bit hash
+    private int slot(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return Math.floorMod(h1 + i * h2, slots);
+    }
+
+    // FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 64-bit mixer
+    private static long hash(String element) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : element.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
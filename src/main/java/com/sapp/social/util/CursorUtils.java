@@ -0,0 +1,79 @@
+package com.sapp.social.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes and decodes the opaque cursors handed out by keyset-paginated endpoints.
+ * A cursor wraps the id of the last row on a page; the next page seeks strictly below it.
+ */
+public final class CursorUtils {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private CursorUtils() {
+    }
+
+    /**
+     * Wraps a row id into an opaque cursor
+     *
+     * @param id The id of the last row on the current page
+     * @return The cursor, or null if there is no id
+     */
+    public static String encode(Long id) {
+        if (id == null) {
+            return null;
+        }
+        return ENCODER.encodeToString(Long.toString(id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Unwraps a cursor produced by {@link #encode(Long)}
+     *
+     * @param cursor The cursor sent by the client, may be null or blank for the first page
+     * @return The row id to seek below, or null for the first page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static Long decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(new String(DECODER.decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Wraps a string sort key, such as a comment path, into an opaque cursor
+     *
+     * @param key The sort key of the last row on the current page
+     * @return The cursor, or null if there is no key
+     */
+    public static String encodeKey(String key) {
+        if (key == null) {
+            return null;
+        }
+        return ENCODER.encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Unwraps a cursor produced by {@link #encodeKey(String)}
+     *
+     * @param cursor The cursor sent by the client, may be null or blank for the first page
+     * @return The sort key to seek past, or null for the first page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static String decodeKey(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return new String(DECODER.decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.sapp.social.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-capacity ring of ids kept in ascending order. Once full, pushing a newer id
+ * drops the oldest one, so memory use never exceeds {@code capacity * 8} bytes.
+ * All methods are synchronized; callers never see a partially applied push.
+ */
+public class LongRingBuffer {
+
+    private final long[] buffer;
+    private int start; // index of the oldest element
+    private int size;
+    private boolean truncated; // true once an element has been dropped to make room
+
+    public LongRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.buffer = new long[capacity];
+    }
+
+    /**
+     * Adds an id, keeping ascending order. Ids usually arrive newest-last so this is O(1);
+     * an out-of-order id is shifted into place.
+     * @param id The id to add
+     * @return false if the id was already present or is older than everything a full ring holds
+     */
+    public synchronized boolean push(long id) {
+        if (size == 0 || id > get(size - 1)) {
+            append(id);
+            return true;
+        }
+
+        int pos = lowerBound(id);
+        if (pos < size && get(pos) == id) {
+            return false;
+        }
+        if (size == buffer.length) {
+            if (pos == 0) {
+                return false;
+            }
+            // Drop the oldest element to make room, then insert one slot lower
+            start = (start + 1) % buffer.length;
+            size--;
+            truncated = true;
+            pos--;
+        }
+        for (int i = size; i > pos; i--) {
+            set(i, get(i - 1));
+        }
+        set(pos, id);
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes an id if present
+     * @param id The id to remove
+     * @return true if the id was found
+     */
+    public synchronized boolean remove(long id) {
+        int pos = lowerBound(id);
+        if (pos >= size || get(pos) != id) {
+            return false;
+        }
+        for (int i = pos; i < size - 1; i++) {
+            set(i, get(i + 1));
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns up to {@code limit} ids strictly below {@code before}, newest first
+     * @param before Exclusive upper bound, or null to start from the newest id
+     * @param limit Maximum number of ids to return
+     */
+    public synchronized List<Long> sliceBefore(Long before, int limit) {
+        int end = before == null ? size : lowerBound(before);
+        List<Long> ids = new ArrayList<>(Math.min(limit, end));
+        for (int i = end - 1; i >= 0 && ids.size() < limit; i--) {
+            ids.add(get(i));
+        }
+        return ids;
+    }
+
+    /**
+     * Replaces the contents with the given ids
+     * @param idsNewestFirst Ids in descending order, as returned by a newest-first query
+     */
+    public synchronized void reset(List<Long> idsNewestFirst) {
+        start = 0;
+        size = 0;
+        truncated = false;
+        int count = Math.min(idsNewestFirst.size(), buffer.length);
+        for (int i = count - 1; i >= 0; i--) {
+            buffer[size++] = idsNewestFirst.get(i);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * @return true if older ids have been dropped since the last reset
+     */
+    public synchronized boolean isTruncated() {
+        return truncated;
+    }
+
+    private void append(long id) {
+        if (size == buffer.length) {
+            buffer[start] = id;
+            start = (start + 1) % buffer.length;
+            truncated = true;
+        } else {
+            set(size, id);
+            size++;
+        }
+    }
+
+    // First logical index whose value is >= id
+    private int lowerBound(long id) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (get(mid) < id) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private long get(int index) {
+        return buffer[(start + index) % buffer.length];
+    }
+
+    private void set(int index, long value) {
+        buffer[(start + index) % buffer.length] = value;
+    }
+}
@@ -0,0 +1,134 @@
+package com.sapp.social.controller;
+
+import com.sapp.social.service.FileStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Conditional and range requests against a stored file: full bodies, single ranges, ranges past
+ * the end, revalidation by ETag and If-Range with a stale validator.
+ */
+class MediaControllerTest {
+
+    private static final String NAME = "clip.mp4";
+    private static final String ETAG = "\"" + NAME + "\"";
+    private static final String BODY = "0123456789abcdefghij";
+
+    @TempDir
+    Path uploadDir;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.writeString(uploadDir.resolve(NAME), BODY, StandardCharsets.US_ASCII);
+
+        FileStorageService fileStorageService = new FileStorageService();
+        ReflectionTestUtils.setField(fileStorageService, "uploadDir", uploadDir.toString());
+        ReflectionTestUtils.setField(fileStorageService, "spoolDir", "");
+        ReflectionTestUtils.setField(fileStorageService, "allowedImageTypes", "image/jpeg,image/png,image/gif");
+        ReflectionTestUtils.setField(fileStorageService, "allowedVideoTypes", "video/mp4,video/quicktime");
+        ReflectionTestUtils.invokeMethod(fileStorageService, "init");
+
+        MediaController controller = new MediaController();
+        ReflectionTestUtils.setField(controller, "fileStorageService", fileStorageService);
+        ReflectionTestUtils.setField(controller, "sendfileThreshold", 49152L);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void servesTheWholeFileWithValidators() throws Exception {
+        mockMvc.perform(get("/api/media/" + NAME))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "video/mp4"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, BODY.length()))
+                .andExpect(content().string(BODY));
+    }
+
+    @Test
+    void answersASingleRangeWithPartialContent() throws Exception {
+        mockMvc.perform(get("/api/media/" + NAME).header(HttpHeaders.RANGE, "bytes=5-9"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 5-9/20"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 5))
+                .andExpect(content().string("56789"));
+
+        mockMvc.perform(get("/api/media/" + NAME).header(HttpHeaders.RANGE, "bytes=-4"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 16-19/20"))
+                .andExpect(content().string("ghij"));
+    }
+
+    @Test
+    void rejectsARangePastTheEnd() throws Exception {
+        mockMvc.perform(get("/api/media/" + NAME).header(HttpHeaders.RANGE, "bytes=20-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */20"));
+    }
+
+    @Test
+    void servesTheWholeFileForSeveralRanges() throws Exception {
+        mockMvc.perform(get("/api/media/" + NAME).header(HttpHeaders.RANGE, "bytes=0-1,5-6"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(BODY));
+    }
+
+    @Test
+    void revalidatesByEtag() throws Exception {
+        mockMvc.perform(get("/api/media/" + NAME).header(HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(get("/api/media/" + NAME).header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+                .andExpect(status().isOk())
+                .andExpect(content().string(BODY));
+    }
+
+    @Test
+    void ignoresTheRangeWhenIfRangeDoesNotMatch() throws Exception {
+        mockMvc.perform(get("/api/media/" + NAME)
+                        .header(HttpHeaders.RANGE, "bytes=0-3")
+                        .header(HttpHeaders.IF_RANGE, "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(content().string(BODY));
+
+        mockMvc.perform(get("/api/media/" + NAME)
+                        .header(HttpHeaders.RANGE, "bytes=0-3")
+                        .header(HttpHeaders.IF_RANGE, ETAG))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("0123"));
+    }
+
+    @Test
+    void answersHeadWithoutABody() throws Exception {
+        mockMvc.perform(head("/api/media/" + NAME))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, BODY.length()))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void refusesNamesOutsideTheUploadDirectory() throws Exception {
+        mockMvc.perform(get("/api/media/.incoming"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/media/missing.mp4"))
+                .andExpect(status().isNotFound());
+    }
+}
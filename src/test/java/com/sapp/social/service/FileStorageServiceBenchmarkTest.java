@@ -0,0 +1,184 @@
+package com.sapp.social.service;
+
+import com.sapp.social.dto.StoredFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Compares the old upload path (copy the spooled part's stream into the upload directory),
+ * alone and followed by a digest pass, with {@link FileStorageService#store}, which moves the
+ * spooled file and hashes it in one read. Logs throughput for 1 MB and 10 MB files and checks
+ * the reported size and digest; timings are informational and never fail the build.
+ * Left out of the default test run; run it with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class FileStorageServiceBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileStorageServiceBenchmarkTest.class);
+
+    private static final int MB = 1024 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private FileStorageService fileStorageService;
+    private Path spoolDir;
+    private Path uploadDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        spoolDir = Files.createDirectories(tempDir.resolve("spool"));
+        uploadDir = tempDir.resolve("uploads");
+
+        fileStorageService = new FileStorageService();
+        ReflectionTestUtils.setField(fileStorageService, "uploadDir", uploadDir.toString());
+        ReflectionTestUtils.setField(fileStorageService, "allowedImageTypes", "image/jpeg,image/png");
+        ReflectionTestUtils.setField(fileStorageService, "allowedVideoTypes", "video/mp4");
+        ReflectionTestUtils.invokeMethod(fileStorageService, "init");
+    }
+
+    @Test
+    void oneMegabyteFiles() throws Exception {
+        benchmark(MB, 50);
+    }
+
+    @Test
+    void tenMegabyteFiles() throws Exception {
+        benchmark(10 * MB, 10);
+    }
+
+    private void benchmark(int size, int iterations) throws Exception {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        String expectedDigest = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+
+        // Warm up both paths before timing
+        copyLegacy(spool(content));
+        fileStorageService.store(spool(content));
+
+        long legacyNanos = 0;
+        long legacyHashedNanos = 0;
+        long streamingNanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            SpooledMultipartFile legacyPart = spool(content);
+            long start = System.nanoTime();
+            copyLegacy(legacyPart);
+            legacyNanos += System.nanoTime() - start;
+
+            SpooledMultipartFile hashedPart = spool(content);
+            start = System.nanoTime();
+            FileStorageService.sha256(copyLegacy(hashedPart));
+            legacyHashedNanos += System.nanoTime() - start;
+
+            SpooledMultipartFile part = spool(content);
+            start = System.nanoTime();
+            StoredFile stored = fileStorageService.store(part);
+            streamingNanos += System.nanoTime() - start;
+
+            assertEquals(size, stored.getSize());
+            assertEquals(expectedDigest, stored.getSha256());
+            assertFalse(Files.exists(part.path), "spooled part should have been moved");
+        }
+
+        logger.info("{} MB x {}: copy {} MB/s, copy + SHA-256 {} MB/s, move + SHA-256 {} MB/s",
+                size / MB, iterations, Math.round(throughput(size, iterations, legacyNanos)),
+                Math.round(throughput(size, iterations, legacyHashedNanos)),
+                Math.round(throughput(size, iterations, streamingNanos)));
+    }
+
+    // The pre-change storeFile: a second full write of the already spooled bytes
+    private Path copyLegacy(MultipartFile file) throws IOException {
+        Path target = uploadDir.resolve(UUID.randomUUID() + ".jpg");
+        try (InputStream in = file.getInputStream()) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target;
+    }
+
+    private SpooledMultipartFile spool(byte[] content) throws IOException {
+        Path path = spoolDir.resolve("upload_" + UUID.randomUUID() + ".tmp");
+        Files.write(path, content);
+        return new SpooledMultipartFile(path);
+    }
+
+    private static double throughput(int size, int iterations, long nanos) {
+        return (double) size * iterations / MB / (nanos / 1e9);
+    }
+
+    /**
+     * Stands in for a part the servlet container spooled to disk: transferTo renames the
+     * temp file, as Tomcat's Part.write does on the same filesystem
+     */
+    private static class SpooledMultipartFile implements MultipartFile {
+
+        private final Path path;
+
+        SpooledMultipartFile(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public String getName() {
+            return "media";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return "photo.jpg";
+        }
+
+        @Override
+        public String getContentType() {
+            return "image/jpeg";
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return getSize() == 0;
+        }
+
+        @Override
+        public long getSize() {
+            try {
+                return Files.size(path);
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            return Files.readAllBytes(path);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.move(path, dest.toPath());
+        }
+    }
+}
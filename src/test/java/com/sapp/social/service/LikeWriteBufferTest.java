@@ -0,0 +1,200 @@
+package com.sapp.social.service;
+
+import com.sapp.social.model.Post;
+import com.sapp.social.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * Toggles through the buffer against a real database: likes that cancel never reach it,
+ * buffered and inflight changes stay visible to readers, and a batch the database could not
+ * take is put back in front of the toggles that arrived meanwhile.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@Import({LikeWriteBuffer.class, LikeBitmapIndex.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // flushes commit on their own
+class LikeWriteBufferTest {
+
+    private static final String LIKE_INSERT = "INSERT INTO likes";
+
+    @Autowired
+    private LikeWriteBuffer likeWriteBuffer;
+
+    @MockitoSpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long userId;
+    private Long postId;
+
+    @BeforeEach
+    void setUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            User user = new User();
+            user.setUserName("liker");
+            user.setEmail("liker@example.com");
+            user.setPassword("secret");
+            entityManager.persist(user);
+
+            Post post = new Post();
+            post.setPostType("skill_sharing");
+            post.setDescription("post");
+            post.setUser(user);
+            entityManager.persist(post);
+
+            userId = user.getUserId();
+            postId = post.getPostId();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM likes");
+        jdbcTemplate.update("DELETE FROM posts");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void likeAndUnlikeCancelBeforeTheFlush() {
+        assertTrue(toggle());
+        assertEquals(Boolean.TRUE, likeWriteBuffer.pendingState(userId, postId));
+        assertEquals(1, likeWriteBuffer.pendingDelta(postId));
+
+        assertFalse(toggle());
+        assertNull(likeWriteBuffer.pendingState(userId, postId));
+        assertEquals(0, likeWriteBuffer.pendingDelta(postId));
+
+        likeWriteBuffer.flush();
+        assertEquals(0, storedLikes());
+        assertEquals(0, storedCount());
+    }
+
+    @Test
+    void flushWritesRowsAndCounters() {
+        toggle();
+        likeWriteBuffer.flush();
+
+        assertEquals(1, storedLikes());
+        assertEquals(1, storedCount());
+        assertNull(likeWriteBuffer.pendingState(userId, postId));
+        assertEquals(0, likeWriteBuffer.pendingDelta(postId));
+
+        assertFalse(toggle());
+        likeWriteBuffer.flush();
+
+        assertEquals(0, storedLikes());
+        assertEquals(0, storedCount());
+    }
+
+    @Test
+    void inflightChangesStayVisibleAndLaterTogglesBuildOnThem() {
+        toggle();
+        AtomicInteger seenDelta = new AtomicInteger();
+        doAnswer(invocation -> {
+            // The batch is swapped out but not committed: readers still see the like
+            assertEquals(Boolean.TRUE, likeWriteBuffer.pendingState(userId, postId));
+            seenDelta.set((int) likeWriteBuffer.pendingDelta(postId));
+            assertFalse(toggle());
+            return invocation.callRealMethod();
+        }).doCallRealMethod().when(jdbcTemplate).batchUpdate(startsWith(LIKE_INSERT), anyList());
+
+        likeWriteBuffer.flush();
+
+        assertEquals(1, seenDelta.get());
+        assertEquals(1, storedLikes());
+        assertEquals(Boolean.FALSE, likeWriteBuffer.pendingState(userId, postId));
+        assertEquals(0, storedCount() + likeWriteBuffer.pendingDelta(postId));
+
+        likeWriteBuffer.flush();
+        assertEquals(0, storedLikes());
+        assertEquals(0, storedCount());
+        assertEquals(0, likeWriteBuffer.pendingDelta(postId));
+    }
+
+    @Test
+    void failedBatchIsRequeuedAndWrittenByTheNextFlush() {
+        failNextLikeInsert();
+        toggle();
+
+        likeWriteBuffer.flush();
+
+        assertEquals(0, storedLikes());
+        assertEquals(Boolean.TRUE, likeWriteBuffer.pendingState(userId, postId));
+        assertEquals(1, likeWriteBuffer.pendingDelta(postId));
+
+        likeWriteBuffer.flush();
+
+        assertEquals(1, storedLikes());
+        assertEquals(1, storedCount());
+        assertNull(likeWriteBuffer.pendingState(userId, postId));
+        assertEquals(0, likeWriteBuffer.pendingDelta(postId));
+    }
+
+    @Test
+    void toggleDuringAFailedFlushCancelsTheRequeuedChange() {
+        toggle();
+        doAnswer(invocation -> {
+            assertFalse(toggle());
+            throw new QueryTimeoutException("database unavailable");
+        }).when(jdbcTemplate).batchUpdate(startsWith(LIKE_INSERT), anyList());
+        doThrow(new QueryTimeoutException("database unavailable"))
+                .when(jdbcTemplate).update(startsWith(LIKE_INSERT), any(Object[].class));
+
+        likeWriteBuffer.flush();
+
+        assertNull(likeWriteBuffer.pendingState(userId, postId));
+        assertEquals(0, likeWriteBuffer.pendingDelta(postId));
+        assertEquals(0, storedLikes());
+    }
+
+    private boolean toggle() {
+        return likeWriteBuffer.toggle(userId, postId, () -> storedLikes() > 0);
+    }
+
+    private void failNextLikeInsert() {
+        doThrow(new QueryTimeoutException("database unavailable")).doCallRealMethod()
+                .when(jdbcTemplate).batchUpdate(startsWith(LIKE_INSERT), anyList());
+        doThrow(new QueryTimeoutException("database unavailable")).doCallRealMethod()
+                .when(jdbcTemplate).update(startsWith(LIKE_INSERT), any(Object[].class));
+    }
+
+    private int storedLikes() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Integer.class);
+    }
+
+    private long storedCount() {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM posts WHERE post_id = ?", Long.class, postId);
+    }
+}
@@ -0,0 +1,118 @@
+package com.sapp.social.service;
+
+import com.sapp.social.model.Message;
+import com.sapp.social.service.MessageArchive.ArchivedMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round-trips messages through the block encoding: several blocks per conversation, multi-byte
+ * text, nanosecond timestamps and every status must come back exactly as written.
+ */
+class MessageArchiveTest {
+
+    private static final int BLOCK_MESSAGES = 4;
+
+    @TempDir
+    Path dataDir;
+
+    private MessageArchive archive;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        archive = open();
+    }
+
+    @Test
+    void readsBackEveryFieldAcrossBlocks() throws IOException {
+        List<ArchivedMessage> messages = messages(1, 10);
+        archive.append(1, 2, messages.subList(0, 6));
+        archive.append(1, 2, messages.subList(6, 10));
+
+        assertEquals(messages, archive.readAll(1, 2));
+        assertEquals(messages, open().readAll(1, 2));
+        assertEquals(10, archive.archivedMaxId(1, 2));
+    }
+
+    @Test
+    void pagesNewestFirstBelowTheCursor() throws IOException {
+        List<ArchivedMessage> messages = messages(1, 10);
+        archive.append(1, 2, messages);
+
+        List<ArchivedMessage> page = archive.readBefore(1, 2, 7L, 3);
+
+        assertEquals(List.of(6L, 5L, 4L), page.stream().map(ArchivedMessage::messageId).toList());
+        assertEquals(messages.get(5), page.get(0));
+        assertTrue(archive.readBefore(1, 2, 1L, 10).isEmpty());
+    }
+
+    @Test
+    void findsMessagesByIdInTheirBlocks() throws IOException {
+        archive.append(1, 2, messages(1, 10));
+
+        List<ArchivedMessage> found = archive.findByIds(1, 2, Set.of(2L, 9L, 42L));
+
+        assertEquals(List.of(2L, 9L), found.stream().map(ArchivedMessage::messageId).toList());
+    }
+
+    @Test
+    void ignoresATornIndexEntryAndOverwritesItOnTheNextAppend() throws IOException {
+        List<ArchivedMessage> messages = messages(1, 8);
+        archive.append(1, 2, messages.subList(0, 4));
+        Files.write(dataDir.resolve("c1_2.idx"), new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        MessageArchive reopened = open();
+        assertEquals(messages.subList(0, 4), reopened.readAll(1, 2));
+
+        reopened.append(1, 2, messages.subList(4, 8));
+        assertEquals(messages, open().readAll(1, 2));
+    }
+
+    @Test
+    void deletesOnlyTheUsersConversations() throws IOException {
+        archive.append(1, 2, messages(1, 3));
+        archive.append(2, 3, messages(4, 6));
+        archive.append(3, 4, messages(7, 9));
+
+        archive.deleteConversationsOf(2);
+
+        assertTrue(archive.readAll(1, 2).isEmpty());
+        assertTrue(archive.readAll(2, 3).isEmpty());
+        assertEquals(3, archive.readAll(3, 4).size());
+    }
+
+    private MessageArchive open() throws IOException {
+        MessageArchive opened = new MessageArchive();
+        ReflectionTestUtils.setField(opened, "dataDir", dataDir.toString());
+        ReflectionTestUtils.setField(opened, "blockMessages", BLOCK_MESSAGES);
+        opened.init();
+        return opened;
+    }
+
+    private static List<ArchivedMessage> messages(long firstId, long lastId) {
+        Message.MessageStatus[] statuses = Message.MessageStatus.values();
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 12, 0, 0, 123_456_789);
+        List<ArchivedMessage> messages = new ArrayList<>();
+        for (long id = firstId; id <= lastId; id++) {
+            messages.add(new ArchivedMessage(id, id % 2 == 0 ? 1 : 2, id % 2 == 0 ? 2 : 1,
+                    "message " + id + " – héllo 👋".repeat((int) id % 3 + 1),
+                    start.plusSeconds(id).plusNanos(id),
+                    statuses[(int) (id % statuses.length)]));
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,196 @@
+package com.sapp.social.service;
+
+import com.sapp.social.dto.MessageResponse;
+import com.sapp.social.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Batches that mix valid messages with ones from or to unknown users: the group commit stores
+ * the valid ones and rejects the rest, and when the group commit fails the messages still
+ * waiting are stored or rejected one by one.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ingest;DB_CLOSE_DELAY=-1;MODE=MySQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.chat.ingest.max-batch-size=4",
+        "app.chat.ingest.max-delay-ms=2000" // long enough that the four submits share a batch
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE) // summaries upsert in MySQL syntax
+@Import({MessageIngestQueue.class, MessageService.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // the writer thread commits on its own
+class MessageIngestQueueTest {
+
+    private static final long UNKNOWN = 999_999L;
+    private static final String USER_LOOKUP = "SELECT user_id, user_name FROM users";
+
+    @Autowired
+    private MessageIngestQueue messageIngestQueue;
+
+    @MockitoSpyBean
+    private MessageService messageService;
+
+    @MockitoSpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private MessageSearchIndex messageSearchIndex;
+
+    @MockitoBean
+    private MessageArchive messageArchive;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long ann;
+    private Long bob;
+
+    @BeforeEach
+    void setUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ann = persistUser("ann").getUserId();
+            bob = persistUser("bob").getUserId();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM messages");
+        jdbcTemplate.update("DELETE FROM conversation_summaries");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void groupCommitStoresValidMessagesAndRejectsUnknownUsers() throws Exception {
+        CompletableFuture<MessageResponse> first = messageIngestQueue.submit(ann, bob, "hi bob");
+        CompletableFuture<MessageResponse> unknownSender = messageIngestQueue.submit(UNKNOWN, bob, "who?");
+        CompletableFuture<MessageResponse> unknownReceiver = messageIngestQueue.submit(ann, UNKNOWN, "anyone?");
+        CompletableFuture<MessageResponse> reply = messageIngestQueue.submit(bob, ann, "hi ann");
+
+        MessageResponse stored = first.get(10, TimeUnit.SECONDS);
+        MessageResponse storedReply = reply.get(10, TimeUnit.SECONDS);
+        assertEquals("ann", stored.getSenderName());
+        assertEquals("bob", stored.getReceiverName());
+        assertEquals("Sender not found", rejection(unknownSender).getMessage());
+        assertEquals("Receiver not found", rejection(unknownReceiver).getMessage());
+
+        verify(messageService, never()).saveMessage(anyLong(), anyLong(), anyString());
+        assertEquals(List.of(stored.getMessageId(), storedReply.getMessageId()), storedMessageIds());
+        assertSummary(storedReply.getMessageId());
+    }
+
+    @Test
+    void failedInsertFallsBackToSingleSavesForTheValidatedMessages() throws Exception {
+        doThrow(new DataIntegrityViolationException("user deleted meanwhile")).doCallRealMethod()
+                .when(jdbcTemplate).update(any(PreparedStatementCreator.class), any(KeyHolder.class));
+
+        CompletableFuture<MessageResponse> first = messageIngestQueue.submit(ann, bob, "hi bob");
+        CompletableFuture<MessageResponse> unknownSender = messageIngestQueue.submit(UNKNOWN, bob, "who?");
+        CompletableFuture<MessageResponse> reply = messageIngestQueue.submit(bob, ann, "hi ann");
+        CompletableFuture<MessageResponse> unknownReceiver = messageIngestQueue.submit(bob, UNKNOWN, "anyone?");
+
+        MessageResponse stored = first.get(10, TimeUnit.SECONDS);
+        MessageResponse storedReply = reply.get(10, TimeUnit.SECONDS);
+        assertEquals("Sender not found", rejection(unknownSender).getMessage());
+        assertEquals("Receiver not found", rejection(unknownReceiver).getMessage());
+
+        // Rejected during validation, so only the two valid messages are retried
+        verify(messageService, times(2)).saveMessage(anyLong(), anyLong(), anyString());
+        assertEquals(List.of(stored.getMessageId(), storedReply.getMessageId()), storedMessageIds());
+        assertSummary(storedReply.getMessageId());
+    }
+
+    @Test
+    void failureBeforeValidationRetriesEveryMessage() throws Exception {
+        doThrow(new QueryTimeoutException("lookup timed out")).doCallRealMethod()
+                .when(jdbcTemplate).query(startsWith(USER_LOOKUP), any(RowCallbackHandler.class), any(Object[].class));
+
+        CompletableFuture<MessageResponse> first = messageIngestQueue.submit(ann, bob, "hi bob");
+        CompletableFuture<MessageResponse> unknownSender = messageIngestQueue.submit(UNKNOWN, ann, "who?");
+        CompletableFuture<MessageResponse> reply = messageIngestQueue.submit(bob, ann, "hi ann");
+        CompletableFuture<MessageResponse> unknownReceiver = messageIngestQueue.submit(ann, UNKNOWN, "anyone?");
+
+        MessageResponse stored = first.get(10, TimeUnit.SECONDS);
+        MessageResponse storedReply = reply.get(10, TimeUnit.SECONDS);
+        assertEquals("Sender not found", rejection(unknownSender).getMessage());
+        assertEquals("Receiver not found", rejection(unknownReceiver).getMessage());
+
+        verify(messageService, times(4)).saveMessage(anyLong(), anyLong(), anyString());
+        verify(messageService).saveMessage(eq(UNKNOWN), eq(ann), anyString());
+        assertEquals(List.of(stored.getMessageId(), storedReply.getMessageId()), storedMessageIds());
+        assertSummary(storedReply.getMessageId());
+    }
+
+    private static Throwable rejection(CompletableFuture<MessageResponse> future) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(RuntimeException.class, e.getCause());
+        return e.getCause();
+    }
+
+    private List<Long> storedMessageIds() {
+        return jdbcTemplate.queryForList("SELECT message_id FROM messages ORDER BY message_id", Long.class);
+    }
+
+    // One conversation, one unread message for each side, ending with the reply
+    private void assertSummary(Long lastMessageId) {
+        List<Map<String, Object>> summaries = jdbcTemplate.queryForList(
+                "SELECT last_message_id, unread_low, unread_high FROM conversation_summaries");
+        assertEquals(1, summaries.size());
+        Map<String, Object> summary = summaries.get(0);
+        assertEquals(lastMessageId, ((Number) summary.get("LAST_MESSAGE_ID")).longValue());
+        assertEquals(1, ((Number) summary.get("UNREAD_LOW")).intValue());
+        assertEquals(1, ((Number) summary.get("UNREAD_HIGH")).intValue());
+    }
+
+    private User persistUser(String name) {
+        User user = new User();
+        user.setUserName(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        entityManager.persist(user);
+        return user;
+    }
+}
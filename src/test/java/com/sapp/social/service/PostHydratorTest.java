@@ -0,0 +1,132 @@
+package com.sapp.social.service;
+
+import com.sapp.social.dto.FeedItem;
+import com.sapp.social.model.Comment;
+import com.sapp.social.model.Content;
+import com.sapp.social.model.Like;
+import com.sapp.social.model.Post;
+import com.sapp.social.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Guards against N+1 regressions: hydrating a page must cost the same number of
+ * statements whether it holds one post or fifty.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({PostHydrator.class, LikeWriteBuffer.class, LikeBitmapIndex.class, SimpleMeterRegistry.class})
+class PostHydratorTest {
+
+    private static final int QUERIES_PER_PAGE = 3; // posts with authors and counters, contents, cold liker bitmaps
+
+    @Autowired
+    private PostHydrator postHydrator;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User viewer;
+    private final List<Long> postIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        viewer = persistUser("viewer");
+        for (int i = 0; i < 50; i++) {
+            User author = persistUser("author" + i);
+            Post post = new Post();
+            post.setPostType("skill_sharing");
+            post.setDescription("post " + i);
+            post.setUser(author);
+            post.setLikeCount(1);
+            post.setCommentCount(1);
+            entityManager.persist(post);
+
+            Content content = new Content();
+            content.setPath("file" + i + ".png");
+            content.setContentType("image/png");
+            content.setFileType("image");
+            content.setPost(post);
+            entityManager.persist(content);
+
+            Like like = new Like();
+            like.setUser(i % 2 == 0 ? viewer : author);
+            like.setPost(post);
+            like.setCreatedAt(LocalDateTime.now());
+            entityManager.persist(like);
+
+            Comment comment = new Comment();
+            comment.setContent("comment " + i);
+            comment.setCreatedAt(LocalDateTime.now());
+            comment.setUser(author);
+            comment.setPost(post);
+            entityManager.persist(comment);
+
+            postIds.add(0, post.getPostId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void queryCountDoesNotGrowWithPageSize() {
+        assertEquals(QUERIES_PER_PAGE, countQueries(postIds.subList(0, 1)));
+        assertEquals(QUERIES_PER_PAGE, countQueries(postIds.subList(0, 10)));
+        assertEquals(QUERIES_PER_PAGE, countQueries(postIds));
+    }
+
+    @Test
+    void hydratesAuthorsCountsAndLikedFlagInOrder() {
+        List<FeedItem> items = postHydrator.hydrate(postIds, viewer.getUserId());
+
+        assertEquals(postIds.size(), items.size());
+        for (int i = 0; i < items.size(); i++) {
+            FeedItem item = items.get(i);
+            assertEquals(postIds.get(i), item.getPostId());
+            assertTrue(item.getUserName().startsWith("author"));
+            assertEquals(1, item.getMedia().size());
+            assertEquals(1, item.getLikeCount());
+            assertEquals(1, item.getCommentCount());
+        }
+        assertEquals(25, items.stream().filter(FeedItem::isLikedByMe).count());
+    }
+
+    private long countQueries(List<Long> ids) {
+        entityManager.clear();
+        statistics.clear();
+        postHydrator.hydrate(ids, viewer.getUserId());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private User persistUser(String name) {
+        User user = new User();
+        user.setUserName(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        entityManager.persist(user);
+        return user;
+    }
+}
@@ -0,0 +1,137 @@
+package com.sapp.social.service;
+
+import com.sapp.social.dto.CommentResponse;
+import com.sapp.social.dto.LikeResponse;
+import com.sapp.social.model.Comment;
+import com.sapp.social.model.Like;
+import com.sapp.social.model.Post;
+import com.sapp.social.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Guards the comment and like listings of a post against N+1 regressions: each is one
+ * statement that fetches the authors along with the rows, however many rows the post has.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({CommentService.class, LikeService.class, LikeWriteBuffer.class, LikeBitmapIndex.class, SimpleMeterRegistry.class})
+class PostInteractionReadsTest {
+
+    private static final int ROWS = 30;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private LikeService likeService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Post small;
+    private Post large;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        User owner = persistUser("owner");
+        small = persistPost(owner);
+        large = persistPost(owner);
+        interact(small, 1, "small");
+        interact(large, ROWS, "large");
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void commentListingIsOneStatementAtAnySize() {
+        assertEquals(1, countQueries(() -> commentService.getPostComments(small.getPostId())));
+        assertEquals(1, countQueries(() -> commentService.getPostComments(large.getPostId())));
+
+        List<CommentResponse> comments = commentService.getPostComments(large.getPostId());
+        assertEquals(ROWS / 2, comments.size());
+        for (CommentResponse comment : comments) {
+            assertEquals(1, comment.getReplies().size());
+            assertEquals(comment.getCommentId(), comment.getReplies().get(0).getParentCommentId());
+        }
+    }
+
+    @Test
+    void likeListingIsOneStatementAtAnySize() {
+        assertEquals(1, countQueries(() -> likeService.getPostLikes(small.getPostId())));
+        assertEquals(1, countQueries(() -> likeService.getPostLikes(large.getPostId())));
+
+        List<LikeResponse> likes = likeService.getPostLikes(large.getPostId());
+        assertEquals(ROWS, likes.size());
+        assertEquals(ROWS, likes.stream().map(LikeResponse::getUserName).distinct().count());
+    }
+
+    private long countQueries(Runnable read) {
+        entityManager.clear();
+        statistics.clear();
+        read.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    // Every row gets its own author, so a lazy author lookup would cost one statement per row
+    private void interact(Post post, int rows, String prefix) {
+        Comment parent = null;
+        for (int i = 0; i < rows; i++) {
+            User user = persistUser(prefix + i);
+
+            Comment comment = new Comment();
+            comment.setContent("comment " + i);
+            comment.setCreatedAt(LocalDateTime.now().plusSeconds(i));
+            comment.setUser(user);
+            comment.setPost(post);
+            comment.setParentComment(i % 2 == 1 ? parent : null);
+            entityManager.persist(comment);
+            parent = comment;
+
+            Like like = new Like();
+            like.setUser(user);
+            like.setPost(post);
+            like.setCreatedAt(LocalDateTime.now());
+            entityManager.persist(like);
+        }
+    }
+
+    private Post persistPost(User author) {
+        Post post = new Post();
+        post.setPostType("skill_sharing");
+        post.setDescription("post");
+        post.setUser(author);
+        entityManager.persist(post);
+        return post;
+    }
+
+    private User persistUser(String name) {
+        User user = new User();
+        user.setUserName(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        entityManager.persist(user);
+        return user;
+    }
+}
@@ -0,0 +1,235 @@
+package com.sapp.social.service;
+
+import com.sapp.social.dto.PresenceResponse;
+import com.sapp.social.model.ConversationSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Drives the timer wheel on a test clock: heartbeats bring users online, silent users drop off
+ * after the TTL, and each tick pushes its changes to online partners with one partner query.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "app.presence.ttl-ms=60000",
+        "app.presence.tick-ms=1000"
+})
+@Import({PresenceService.class, SimpleMeterRegistry.class, PresenceServiceTest.ClockConfig.class})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD) // presence state lives in the bean
+class PresenceServiceTest {
+
+    private static final long ANN = 10L;
+    private static final long BOB = 20L;
+    private static final long CAT = 30L;
+    private static final long DAN = 40L;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private TestClock clock;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        persistConversation(ANN, BOB);
+        persistConversation(ANN, CAT);
+        persistConversation(BOB, DAN);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void pushesChangesToOnlinePartnersWithOneQueryPerTick() {
+        presenceService.heartbeat(ANN);
+        presenceService.heartbeat(BOB);
+        presenceService.heartbeat(CAT);
+
+        statistics.clear();
+        presenceService.tick();
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        Map<String, Set<PresenceResponse>> pushed = capturePushes();
+        assertEquals(Set.of(new PresenceResponse(BOB, true), new PresenceResponse(CAT, true)), pushed.get("10"));
+        assertEquals(Set.of(new PresenceResponse(ANN, true)), pushed.get("20"));
+        assertEquals(Set.of(new PresenceResponse(ANN, true)), pushed.get("30"));
+        assertFalse(pushed.containsKey("40"));
+    }
+
+    @Test
+    void quietTickPushesNothing() {
+        presenceService.heartbeat(ANN);
+        presenceService.tick();
+        clearInvocations(messagingTemplate);
+
+        statistics.clear();
+        presenceService.tick();
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+    }
+
+    @Test
+    void expiresUsersWhoseTtlRanOutAndKeepsRefreshedOnes() {
+        presenceService.heartbeat(ANN);
+        presenceService.heartbeat(BOB);
+        presenceService.tick();
+        clearInvocations(messagingTemplate);
+
+        clock.advance(30_000);
+        presenceService.heartbeat(BOB);
+        presenceService.tick();
+        clock.advance(29_999);
+        presenceService.tick();
+        assertTrue(presenceService.isOnline(ANN));
+
+        clock.advance(1);
+        presenceService.tick();
+
+        assertFalse(presenceService.isOnline(ANN));
+        assertTrue(presenceService.isOnline(BOB));
+        assertEquals(Set.of(new PresenceResponse(ANN, false)), capturePushes().get("20"));
+    }
+
+    @Test
+    void heartbeatAfterExpiryBringsTheUserBack() {
+        presenceService.heartbeat(ANN);
+        presenceService.tick();
+
+        clock.advance(60_000);
+        presenceService.tick();
+        assertFalse(presenceService.isOnline(ANN));
+
+        presenceService.heartbeat(ANN);
+        presenceService.tick();
+        assertTrue(presenceService.isOnline(ANN));
+        assertEquals(Map.of(ANN, true, BOB, false), presenceService.getOnlineStatuses(List.of(ANN, BOB)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Set<PresenceResponse>> capturePushes() {
+        ArgumentCaptor<String> recipients = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object> payloads = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, atLeast(0)).convertAndSendToUser(recipients.capture(),
+                eq(PresenceService.PRESENCE_DESTINATION), payloads.capture());
+
+        Map<String, Set<PresenceResponse>> pushed = new HashMap<>();
+        for (int i = 0; i < recipients.getAllValues().size(); i++) {
+            pushed.computeIfAbsent(recipients.getAllValues().get(i), id -> new HashSet<>())
+                    .addAll((List<PresenceResponse>) payloads.getAllValues().get(i));
+        }
+        return pushed;
+    }
+
+    @Test
+    void catchesUpOnEveryBucketAfterAStall() {
+        presenceService.heartbeat(ANN);
+        clock.advance(10_000);
+        presenceService.heartbeat(BOB);
+        presenceService.tick();
+
+        clock.advance(500_000);
+        presenceService.tick();
+
+        assertFalse(presenceService.isOnline(ANN));
+        assertFalse(presenceService.isOnline(BOB));
+    }
+
+    private void persistConversation(long lowUserId, long highUserId) {
+        ConversationSummary summary = new ConversationSummary();
+        summary.setLowUserId(lowUserId);
+        summary.setHighUserId(highUserId);
+        summary.setLastMessageId(1L);
+        summary.setLastMessageAt(LocalDateTime.now());
+        summary.setLastSenderId(lowUserId);
+        entityManager.persist(summary);
+    }
+
+    /**
+     * A clock that only moves when told to
+     */
+    static class TestClock extends Clock {
+        private final AtomicLong millis = new AtomicLong(1_700_000_000_000L);
+
+        void advance(long deltaMillis) {
+            millis.addAndGet(deltaMillis);
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @TestConfiguration
+    static class ClockConfig {
+        @Bean
+        TestClock clock() {
+            return new TestClock();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.sapp.social.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommentPathsTest {
+
+    @Test
+    void encodesIdsAsFixedWidthBase36Segments() {
+        assertEquals("00000001", CommentPaths.segment(1L));
+        assertEquals("0000000z", CommentPaths.segment(35L));
+        assertEquals("00000010", CommentPaths.segment(36L));
+        assertEquals("zzzzzzzz", CommentPaths.segment(36L * 36 * 36 * 36 * 36 * 36 * 36 * 36 - 1));
+        assertThrows(IllegalArgumentException.class, () -> CommentPaths.segment(36L * 36 * 36 * 36 * 36 * 36 * 36 * 36));
+    }
+
+    @Test
+    void childPathsAppendTheChildSegment() {
+        String root = CommentPaths.childPath(null, 7L);
+        String child = CommentPaths.childPath(root, 40L);
+
+        assertEquals("00000007", root);
+        assertEquals("00000007/00000014", child);
+        assertEquals(1, CommentPaths.depth(root));
+        assertEquals(2, CommentPaths.depth(child));
+    }
+
+    @Test
+    void subtreeBoundsEncloseExactlyTheSubtree() {
+        String root = CommentPaths.childPath(null, 5L);
+        String child = CommentPaths.childPath(root, 9L);
+        String grandchild = CommentPaths.childPath(child, 12L);
+        String sibling = CommentPaths.childPath(null, 6L);
+        String siblingChild = CommentPaths.childPath(sibling, 10L);
+
+        String lower = CommentPaths.descendantsFrom(root);
+        String upper = CommentPaths.subtreeUpperBound(root);
+        for (String inside : List.of(child, grandchild)) {
+            assertTrue(inside.compareTo(lower) > 0 && inside.compareTo(upper) < 0, inside);
+        }
+        assertTrue(root.compareTo(lower) < 0 && root.compareTo(upper) < 0);
+        for (String outside : List.of(sibling, siblingChild)) {
+            assertTrue(outside.compareTo(upper) >= 0, outside);
+        }
+    }
+
+    @Test
+    void sortingByPathGivesDepthFirstOrder() {
+        String a = CommentPaths.childPath(null, 1L);
+        String a1 = CommentPaths.childPath(a, 3L);
+        String a1x = CommentPaths.childPath(a1, 100L);
+        String a2 = CommentPaths.childPath(a, 4L);
+        String b = CommentPaths.childPath(null, 2L);
+
+        List<String> paths = new ArrayList<>(List.of(b, a2, a1x, a, a1));
+        paths.sort(null);
+
+        assertEquals(List.of(a, a1, a1x, a2, b), paths);
+    }
+
+    @Test
+    void ancestorPathCutsBackToTheAncestor() {
+        String root = CommentPaths.childPath(null, 1L);
+        String child = CommentPaths.childPath(root, 2L);
+        String grandchild = CommentPaths.childPath(child, 3L);
+
+        assertEquals(root, CommentPaths.ancestorPath(grandchild, 1L));
+        assertEquals(child, CommentPaths.ancestorPath(grandchild, 2L));
+        assertEquals(grandchild, CommentPaths.ancestorPath(grandchild, 3L));
+        assertNull(CommentPaths.ancestorPath(grandchild, 4L));
+    }
+
+    @Test
+    void maxDepthPathsFitTheIndexedColumn() {
+        String path = null;
+        for (long id = 1; id <= CommentPaths.MAX_DEPTH; id++) {
+            path = CommentPaths.childPath(path, id);
+        }
+
+        assertEquals(CommentPaths.MAX_DEPTH, CommentPaths.depth(path));
+        assertTrue(path.length() <= CommentPaths.MAX_LENGTH);
+    }
+}
@@ -0,0 +1,87 @@
+package com.sapp.social.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountingBloomFilterTest {
+
+    @Test
+    void neverMissesAnAddedElement() {
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("user" + i + "@example.com");
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.com"));
+        }
+    }
+
+    @Test
+    void keepsFalsePositivesNearTheTargetRateAtCapacity() {
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("present" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("absent" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void removedElementsDisappearWithoutHidingOthers() {
+        CountingBloomFilter filter = new CountingBloomFilter(1_000, 0.01);
+        for (int i = 0; i < 1_000; i++) {
+            filter.add("name" + i);
+        }
+
+        for (int i = 0; i < 1_000; i += 2) {
+            filter.remove("name" + i);
+        }
+
+        int stillReported = 0;
+        for (int i = 0; i < 1_000; i++) {
+            if (i % 2 == 1) {
+                assertTrue(filter.mightContain("name" + i));
+            } else if (filter.mightContain("name" + i)) {
+                stillReported++;
+            }
+        }
+        assertTrue(stillReported < 50, "removed but still reported: " + stillReported);
+    }
+
+    @Test
+    void countsDuplicateAddsUntilTheCounterSaturates() {
+        CountingBloomFilter filter = new CountingBloomFilter(100, 0.01);
+        filter.add("twice");
+        filter.add("twice");
+        filter.remove("twice");
+        assertTrue(filter.mightContain("twice"));
+        filter.remove("twice");
+        assertFalse(filter.mightContain("twice"));
+
+        // A saturated counter no longer knows its count, so it stays set rather than risk a miss
+        for (int i = 0; i < 20; i++) {
+            filter.add("often");
+        }
+        for (int i = 0; i < 20; i++) {
+            filter.remove("often");
+        }
+        assertTrue(filter.mightContain("often"));
+    }
+
+    @Test
+    void rejectsInvalidSizing() {
+        assertThrows(IllegalArgumentException.class, () -> new CountingBloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new CountingBloomFilter(100, 0));
+        assertThrows(IllegalArgumentException.class, () -> new CountingBloomFilter(100, 1));
+    }
+}
@@ -0,0 +1,101 @@
+package com.sapp.social.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongRingBufferTest {
+
+    @Test
+    void slicesNewestFirstBelowTheCursor() {
+        LongRingBuffer ring = new LongRingBuffer(10);
+        for (long id = 1; id <= 6; id++) {
+            ring.push(id);
+        }
+
+        assertEquals(List.of(6L, 5L, 4L), ring.sliceBefore(null, 3));
+        assertEquals(List.of(3L, 2L), ring.sliceBefore(4L, 2));
+        assertEquals(List.of(2L, 1L), ring.sliceBefore(3L, 10));
+        assertEquals(List.of(), ring.sliceBefore(1L, 10));
+    }
+
+    @Test
+    void dropsTheOldestIdOnceFull() {
+        LongRingBuffer ring = new LongRingBuffer(3);
+        ring.push(1);
+        ring.push(2);
+        ring.push(3);
+        assertFalse(ring.isTruncated());
+
+        ring.push(4);
+        ring.push(5);
+
+        assertTrue(ring.isTruncated());
+        assertEquals(3, ring.size());
+        assertEquals(List.of(5L, 4L, 3L), ring.sliceBefore(null, 10));
+    }
+
+    @Test
+    void insertsOutOfOrderIdsInPlaceAndIgnoresDuplicates() {
+        LongRingBuffer ring = new LongRingBuffer(5);
+        ring.push(10);
+        ring.push(30);
+
+        assertTrue(ring.push(20));
+        assertFalse(ring.push(20));
+        assertEquals(List.of(30L, 20L, 10L), ring.sliceBefore(null, 10));
+    }
+
+    @Test
+    void fullRingRejectsIdsOlderThanItHoldsAndMakesRoomForOthers() {
+        LongRingBuffer ring = new LongRingBuffer(3);
+        ring.push(10);
+        ring.push(20);
+        ring.push(30);
+
+        assertFalse(ring.push(5));
+        assertTrue(ring.push(25));
+
+        assertEquals(List.of(30L, 25L, 20L), ring.sliceBefore(null, 10));
+        assertTrue(ring.isTruncated());
+    }
+
+    @Test
+    void removesIdsAcrossTheWrapPoint() {
+        LongRingBuffer ring = new LongRingBuffer(4);
+        for (long id = 1; id <= 6; id++) {
+            ring.push(id); // holds 3..6 with the start index wrapped
+        }
+
+        assertTrue(ring.remove(4));
+        assertFalse(ring.remove(4));
+        assertFalse(ring.remove(1));
+        assertEquals(List.of(6L, 5L, 3L), ring.sliceBefore(null, 10));
+
+        ring.push(7);
+        assertEquals(List.of(7L, 6L, 5L, 3L), ring.sliceBefore(null, 10));
+    }
+
+    @Test
+    void resetReplacesContentsAndClearsTruncation() {
+        LongRingBuffer ring = new LongRingBuffer(3);
+        for (long id = 1; id <= 5; id++) {
+            ring.push(id);
+        }
+
+        ring.reset(List.of(50L, 40L, 30L, 20L));
+
+        assertFalse(ring.isTruncated());
+        assertEquals(List.of(50L, 40L, 30L), ring.sliceBefore(null, 10));
+    }
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new LongRingBuffer(0));
+    }
+}